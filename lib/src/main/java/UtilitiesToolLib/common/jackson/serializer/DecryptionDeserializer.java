@@ -3,8 +3,9 @@ package UtilitiesToolLib.common.jackson.serializer;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
 
 import UtilitiesToolLib.common.util.EncryptionUtil;
@@ -19,31 +20,37 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class DecryptionDeserializer extends JsonDeserializer<Object> implements ContextualDeserializer {
 
-  private Class<?> targetClass;
+  /** Reader of target type, null when target is a string */
+  private final ObjectReader reader;
+
+  public DecryptionDeserializer() {
+    this(null);
+  }
+
+  private DecryptionDeserializer(ObjectReader reader) {
+    this.reader = reader;
+  }
 
   @Override
   public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property) {
-    // Find here the targetClass to be deserialized
-    String targetClassName = ctxt.getContextualType().toCanonical();
-    try {
-      targetClass = Class.forName(targetClassName);
-    } catch (ClassNotFoundException e) {
-      log.error("Failed to get target class", e.getMessage());
+    // Find here the target type to be deserialized, each property gets its own deserializer
+    JavaType targetType = ctxt.getContextualType();
+    if (targetType == null || targetType.hasRawClass(String.class)) {
+      return new DecryptionDeserializer(null);
     }
-    return this;
+    return new DecryptionDeserializer(EncryptedValueMapper.readerFor(targetType));
   }
 
   @Override
   public Object deserialize(JsonParser jsonParser, DeserializationContext ctxt) {
     try {
-      ObjectMapper objectMapper = new ObjectMapper();
       String decryptData = EncryptionUtil.decrypt(jsonParser.getValueAsString());
-      if (targetClass.equals(String.class)) {
+      if (reader == null) {
         return decryptData;
       }
-      return objectMapper.readValue(decryptData, targetClass);
+      return reader.readValue(decryptData);
     } catch (Exception e) {
-      log.error("Failed to deserialize", e.getMessage());
+      log.error("Failed to deserialize: {}", e.getMessage());
       return null;
     }
   }
@@ -0,0 +1,49 @@
+package UtilitiesToolLib.common.jackson.serializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Shared mapper converting values to and from the JSON text being encrypted, readers and writers are cached per type
+ * so their serializers are built only once
+ * 
+ * @author thaint
+ *
+ */
+@UtilityClass
+class EncryptedValueMapper {
+
+  /** Mapper is thread-safe once configured, it is never reconfigured */
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+  private static final Map<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+  /**
+   * Get writer of values of the specific class
+   * 
+   * @param type Class<?>
+   * @return ObjectWriter
+   */
+  ObjectWriter writerFor(Class<?> type) {
+    return WRITERS.computeIfAbsent(type, MAPPER::writerFor);
+  }
+
+  /**
+   * Get reader of values of the specific type
+   * 
+   * @param type JavaType
+   * @return ObjectReader
+   */
+  ObjectReader readerFor(JavaType type) {
+    return READERS.computeIfAbsent(type, MAPPER::readerFor);
+  }
+}
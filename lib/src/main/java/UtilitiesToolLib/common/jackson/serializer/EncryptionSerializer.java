@@ -4,7 +4,6 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
 import UtilitiesToolLib.common.util.EncryptionUtil;
@@ -21,7 +20,6 @@ public class EncryptionSerializer extends JsonSerializer<Object> {
 
   @Override
   public void serialize(Object value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
     if (value == null) {
       jgen.writeNull();
     } else {
@@ -29,7 +27,8 @@ public class EncryptionSerializer extends JsonSerializer<Object> {
         if (value instanceof String) {
           jgen.writeString(EncryptionUtil.encrypt((String) value));
         } else {
-          jgen.writeString(EncryptionUtil.encrypt(mapper.writeValueAsString(value)));
+          String json = EncryptedValueMapper.writerFor(value.getClass()).writeValueAsString(value);
+          jgen.writeString(EncryptionUtil.encrypt(json));
         }
       } catch (Exception e) {
         log.error(e.getMessage(), e);
@@ -0,0 +1,179 @@
+package UtilitiesToolLib.common.util;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * AES-GCM cipher of the chunks of one encrypted stream.<br/>
+ * Stream starts with header [version][key id length][key id][8 bytes nonce prefix][chunk size], each chunk is stored
+ * as [last flag][length][cipher text and tag]. Every chunk but the last one holds exactly chunk size bytes of plain
+ * data, so stored position of a chunk can be computed from its number. IV of a chunk is nonce prefix followed by chunk
+ * number, header and last flag are authenticated together with chunk, so chunks can not be moved, removed or appended.
+ * Cipher is not thread safe.
+ *
+ * @author thaint
+ *
+ */
+class ChunkCipher {
+
+  /** Length of random part of chunk IV */
+  static final int NONCE_PREFIX_LENGTH = 8;
+
+  /** Length of last flag and length stored before each chunk */
+  static final int CHUNK_HEADER_LENGTH = 5;
+
+  private static final int TAG_LENGTH = GcmEncryptionEngine.TAG_LENGTH_BIT / 8;
+
+  private final Cipher cipher;
+
+  private final SecretKey key;
+
+  /** Header of stream, authenticated with every chunk */
+  private final byte[] header;
+
+  /** Length of plain data of each chunk but the last one */
+  private final int chunkSize;
+
+  private final byte[] iv = new byte[GcmEncryptionEngine.IV_LENGTH];
+
+  /**
+   * Create cipher of stream
+   *
+   * @param keyId String
+   * @param key SecretKey
+   * @param noncePrefix byte[]
+   * @param chunkSize int
+   * @throws GeneralSecurityException
+   */
+  ChunkCipher(String keyId, SecretKey key, byte[] noncePrefix, int chunkSize) throws GeneralSecurityException {
+    byte[] keyHeader = GcmEncryptionEngine.createHeader(GcmEncryptionEngine.STREAM_VERSION, keyId);
+
+    this.cipher = Cipher.getInstance(GcmEncryptionEngine.TRANSFORMATION);
+    this.key = key;
+    this.chunkSize = chunkSize;
+    this.header = ByteBuffer.allocate(keyHeader.length + NONCE_PREFIX_LENGTH + Integer.BYTES).put(keyHeader)
+        .put(noncePrefix).putInt(chunkSize).array();
+    System.arraycopy(noncePrefix, 0, iv, 0, NONCE_PREFIX_LENGTH);
+  }
+
+  /**
+   * Read header of stream and create its cipher
+   *
+   * @param in DataInput positioned at the start of stream
+   * @param keyProvider KeyProvider
+   * @return ChunkCipher
+   * @throws IOException if stream is not supported or key can not be provided
+   */
+  static ChunkCipher readHeader(DataInput in, KeyProvider keyProvider) throws IOException {
+    if (in.readByte() != GcmEncryptionEngine.STREAM_VERSION) {
+      throw new IOException("Unsupported encryption stream");
+    }
+    byte[] keyId = new byte[in.readUnsignedByte()];
+    byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+    in.readFully(keyId);
+    in.readFully(noncePrefix);
+    int chunkSize = in.readInt();
+    if (chunkSize <= 0) {
+      throw new IOException("Unsupported encryption stream");
+    }
+
+    try {
+      String id = new String(keyId, StandardCharsets.UTF_8);
+      return new ChunkCipher(id, keyProvider.getKey(id), noncePrefix, chunkSize);
+    } catch (Exception e) {
+      throw new IOException("Failed to initialize decryption stream", e);
+    }
+  }
+
+  /**
+   * Get header of stream
+   *
+   * @return byte[]
+   */
+  byte[] getHeader() {
+    return header;
+  }
+
+  /**
+   * Get length of plain data of each chunk but the last one
+   *
+   * @return int
+   */
+  int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Get maximum length of cipher text and tag of a chunk
+   *
+   * @return int
+   */
+  int getMaxChunkLength() {
+    return chunkSize + TAG_LENGTH;
+  }
+
+  /**
+   * Get position of the specific chunk inside stream
+   *
+   * @param chunkNo int
+   * @return long
+   */
+  long getChunkPosition(int chunkNo) {
+    return header.length + (long) chunkNo * (CHUNK_HEADER_LENGTH + getMaxChunkLength());
+  }
+
+  /**
+   * Encrypt plain data of chunk
+   *
+   * @param chunkNo int
+   * @param last boolean
+   * @param data byte[]
+   * @param length int
+   * @return byte[] cipher text and tag
+   * @throws IOException
+   */
+  byte[] encrypt(int chunkNo, boolean last, byte[] data, int length) throws IOException {
+    try {
+      init(Cipher.ENCRYPT_MODE, chunkNo, last);
+      return cipher.doFinal(data, 0, length);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Failed to encrypt chunk " + chunkNo, e);
+    }
+  }
+
+  /**
+   * Decrypt chunk and verify its tag
+   *
+   * @param chunkNo int
+   * @param last boolean
+   * @param encrypted byte[] cipher text and tag
+   * @param length int
+   * @return byte[] plain data
+   * @throws IOException if chunk has been changed, moved or does not have the expected size
+   */
+  byte[] decrypt(int chunkNo, boolean last, byte[] encrypted, int length) throws IOException {
+    if (length < TAG_LENGTH || length > getMaxChunkLength() || (!last && length != getMaxChunkLength())) {
+      throw new IOException("Invalid length of encrypted chunk " + chunkNo);
+    }
+    try {
+      init(Cipher.DECRYPT_MODE, chunkNo, last);
+      return cipher.doFinal(encrypted, 0, length);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Failed to decrypt chunk " + chunkNo, e);
+    }
+  }
+
+  private void init(int mode, int chunkNo, boolean last) throws GeneralSecurityException {
+    ByteBuffer.wrap(iv, NONCE_PREFIX_LENGTH, Integer.BYTES).putInt(chunkNo);
+    cipher.init(mode, key, new GCMParameterSpec(GcmEncryptionEngine.TAG_LENGTH_BIT, iv));
+    cipher.updateAAD(header);
+    cipher.updateAAD(new byte[] {(byte) (last ? 1 : 0)});
+  }
+}
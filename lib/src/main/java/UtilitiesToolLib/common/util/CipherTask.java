@@ -0,0 +1,84 @@
+package UtilitiesToolLib.common.util;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task applying encryption or decryption to a range of values, results are written at the index of their
+ * value so order is kept whatever thread handles them
+ *
+ * @author thaint
+ *
+ */
+class CipherTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Number of values below which a range is handled by the current thread */
+  private static final int THRESHOLD = 256;
+
+  private final CipherFunction function;
+
+  private final List<String> values;
+
+  private final String[] results;
+
+  private final int from;
+
+  private final int to;
+
+  CipherTask(CipherFunction function, List<String> values, String[] results, int from, int to) {
+    this.function = function;
+    this.values = values;
+    this.results = results;
+    this.from = from;
+    this.to = to;
+  }
+
+  @Override
+  protected void compute() {
+    if (to - from <= THRESHOLD) {
+      for (int i = from; i < to; i++) {
+        String value = values.get(i);
+        try {
+          results[i] = value != null ? function.apply(value) : null;
+        } catch (Exception e) {
+          throw new CipherTaskException(i, e);
+        }
+      }
+      return;
+    }
+
+    int middle = (from + to) >>> 1;
+    invokeAll(new CipherTask(function, values, results, from, middle),
+        new CipherTask(function, values, results, middle, to));
+  }
+
+  /**
+   * Encryption or decryption of single value
+   */
+  @FunctionalInterface
+  interface CipherFunction {
+
+    /**
+     * Encrypt or decrypt value
+     *
+     * @param value String
+     * @return String
+     * @throws Exception
+     */
+    String apply(String value) throws Exception;
+  }
+
+  /**
+   * Failure of value at the specific index, carried out of the pool unchecked
+   */
+  static class CipherTaskException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    CipherTaskException(int index, Exception cause) {
+      super("Failed to process value at index " + index, cause);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package UtilitiesToolLib.common.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream decrypting data written by {@link EncryptingOutputStream} chunk by chunk.<br/>
+ * Data of a chunk is returned only after its tag has been verified, a stream ending before its last chunk is rejected.
+ *
+ * @author thaint
+ *
+ */
+class DecryptingInputStream extends InputStream {
+
+  private final DataInputStream in;
+
+  private final ChunkCipher cipher;
+
+  /** Scratch buffer of encrypted chunk */
+  private final byte[] encrypted;
+
+  /** Plain data of the current chunk */
+  private byte[] chunk = new byte[0];
+
+  private int position;
+
+  /** Number of chunks read */
+  private int chunkNo;
+
+  /** Whether the last chunk has been read */
+  private boolean last;
+
+  /**
+   * Create stream and read its header
+   *
+   * @param in InputStream
+   * @param keyProvider KeyProvider
+   * @throws IOException if stream is not supported or key can not be provided
+   */
+  DecryptingInputStream(InputStream in, KeyProvider keyProvider) throws IOException {
+    this.in = new DataInputStream(in);
+    this.cipher = ChunkCipher.readHeader(this.in, keyProvider);
+    this.encrypted = new byte[cipher.getMaxChunkLength()];
+  }
+
+  @Override
+  public int read() throws IOException {
+    return fill() ? chunk[position++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int length = Math.min(len, chunk.length - position);
+    System.arraycopy(chunk, position, b, off, length);
+    position += length;
+    return length;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+
+    while (skipped < n && fill()) {
+      int length = (int) Math.min(n - skipped, chunk.length - position);
+      position += length;
+      skipped += length;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return chunk.length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Read next chunks until there is data to return
+   *
+   * @return boolean false at the end of stream
+   * @throws IOException if stream has been changed or truncated
+   */
+  private boolean fill() throws IOException {
+    while (position == chunk.length) {
+      if (last) {
+        return false;
+      }
+      readChunk();
+    }
+    return true;
+  }
+
+  /**
+   * Read and decrypt the next chunk
+   *
+   * @throws IOException
+   */
+  private void readChunk() throws IOException {
+    boolean lastChunk;
+    int length;
+
+    try {
+      lastChunk = in.readBoolean();
+      length = in.readInt();
+      if (length < 0 || length > encrypted.length) {
+        throw new IOException("Invalid length of encrypted chunk " + chunkNo);
+      }
+      in.readFully(encrypted, 0, length);
+    } catch (EOFException e) {
+      throw new IOException("Encryption stream is truncated", e);
+    }
+
+    chunk = cipher.decrypt(chunkNo, lastChunk, encrypted, length);
+    position = 0;
+    last = lastChunk;
+    chunkNo++;
+  }
+}
@@ -0,0 +1,169 @@
+package UtilitiesToolLib.common.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access reader of data written by {@link GcmEncryptionEngine#encryptingStream(java.io.OutputStream)}.<br/>
+ * Position of plain data is mapped to its chunk directly, so a read only decrypts the chunks it touches instead of
+ * the stream from its start. The last decrypted chunk is kept for following reads. Reader is not thread safe.
+ *
+ * @author thaint
+ *
+ */
+public class DecryptingPositionalReader {
+
+  private final Source source;
+
+  private final KeyProvider keyProvider;
+
+  private ChunkCipher cipher;
+
+  /** Scratch buffer of encrypted chunk */
+  private byte[] encrypted;
+
+  /** Plain data of the cached chunk */
+  private byte[] chunk;
+
+  private int chunkNo = -1;
+
+  private boolean last;
+
+  /**
+   * Create reader, header of stream is read on the first read
+   *
+   * @param source Source of encrypted stream
+   * @param keyProvider KeyProvider
+   */
+  DecryptingPositionalReader(Source source, KeyProvider keyProvider) {
+    this.source = source;
+    this.keyProvider = keyProvider;
+  }
+
+  /**
+   * Read plain data at the specific position into buffer
+   *
+   * @param buffer ByteBuffer
+   * @param position long position of plain data
+   * @return int number of bytes read, -1 at the end of stream
+   * @throws IOException if stream has been changed or truncated
+   */
+  public int read(ByteBuffer buffer, long position) throws IOException {
+    if (cipher == null) {
+      cipher = ChunkCipher.readHeader(new DataInputStream(new SourceInputStream()), keyProvider);
+      encrypted = new byte[cipher.getMaxChunkLength()];
+    }
+    long no = position / cipher.getChunkSize();
+    if (no > Integer.MAX_VALUE || !loadChunk((int) no)) {
+      return -1;
+    }
+
+    int offset = (int) (position - no * cipher.getChunkSize());
+    if (offset >= chunk.length) {
+      return -1;
+    }
+    int length = Math.min(buffer.remaining(), chunk.length - offset);
+    buffer.put(chunk, offset, length);
+    return length;
+  }
+
+  /**
+   * Read and decrypt the specific chunk unless it is cached
+   *
+   * @param no int chunk number
+   * @return boolean false if stream ends before the chunk
+   * @throws IOException
+   */
+  private boolean loadChunk(int no) throws IOException {
+    if (no == chunkNo) {
+      return true;
+    }
+    if (chunkNo >= 0 && last && no > chunkNo) {
+      return false;
+    }
+
+    long position = cipher.getChunkPosition(no);
+    ByteBuffer prefix = ByteBuffer.allocate(ChunkCipher.CHUNK_HEADER_LENGTH);
+    if (!readFully(prefix, position, no == 0)) {
+      return false;
+    }
+    boolean lastChunk = prefix.get(0) != 0;
+    int length = prefix.getInt(1);
+    if (length < 0 || length > encrypted.length) {
+      throw new IOException("Invalid length of encrypted chunk " + no);
+    }
+    readFully(ByteBuffer.wrap(encrypted, 0, length), position + ChunkCipher.CHUNK_HEADER_LENGTH, true);
+
+    chunk = cipher.decrypt(no, lastChunk, encrypted, length);
+    chunkNo = no;
+    last = lastChunk;
+    return true;
+  }
+
+  /**
+   * Fill buffer from the specific position of source
+   *
+   * @param buffer ByteBuffer
+   * @param position long
+   * @param required boolean whether the end of source is an error
+   * @return boolean false if source ends before any byte is read
+   * @throws IOException
+   */
+  private boolean readFully(ByteBuffer buffer, long position, boolean required) throws IOException {
+    int start = buffer.position();
+
+    while (buffer.hasRemaining()) {
+      int read = source.read(buffer, position + buffer.position() - start);
+      if (read < 0) {
+        if (!required && buffer.position() == start) {
+          return false;
+        }
+        throw new IOException("Encryption stream is truncated", new EOFException());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Positional source of encrypted stream
+   */
+  @FunctionalInterface
+  public interface Source {
+
+    /**
+     * Read bytes at the specific position into buffer
+     *
+     * @param buffer ByteBuffer
+     * @param position long
+     * @return int number of bytes read, -1 at the end of source
+     * @throws IOException
+     */
+    int read(ByteBuffer buffer, long position) throws IOException;
+  }
+
+  /**
+   * Sequential view of source used to read header of stream
+   */
+  private class SourceInputStream extends InputStream {
+
+    private long position;
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = source.read(ByteBuffer.wrap(b, off, len), position);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+  }
+}
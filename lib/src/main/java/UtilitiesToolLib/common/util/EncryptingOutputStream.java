@@ -0,0 +1,131 @@
+package UtilitiesToolLib.common.util;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Stream encrypting data by AES-GCM in chunks of fixed size, see {@link ChunkCipher} for the stored format
+ *
+ * @author thaint
+ *
+ */
+class EncryptingOutputStream extends FilterOutputStream {
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private final DataOutputStream data;
+
+  private final ChunkCipher cipher;
+
+  /** Plain data of chunk being filled */
+  private final byte[] chunk;
+
+  /** Length of plain data in chunk */
+  private int count;
+
+  /** Number of chunks written */
+  private int chunkNo;
+
+  private boolean closed;
+
+  /**
+   * Create stream and write its header
+   *
+   * @param out OutputStream
+   * @param keyId String
+   * @param key SecretKey
+   * @param chunkSize int
+   * @throws IOException
+   * @throws GeneralSecurityException
+   */
+  EncryptingOutputStream(OutputStream out, String keyId, SecretKey key, int chunkSize)
+      throws IOException, GeneralSecurityException {
+    super(out);
+    byte[] noncePrefix = new byte[ChunkCipher.NONCE_PREFIX_LENGTH];
+    RANDOM.nextBytes(noncePrefix);
+
+    this.data = new DataOutputStream(out);
+    this.cipher = new ChunkCipher(keyId, key, noncePrefix, chunkSize);
+    this.chunk = new byte[chunkSize];
+    data.write(cipher.getHeader());
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (count == chunk.length) {
+      writeChunk(false);
+    }
+    chunk[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    while (len > 0) {
+      // Full chunk is written only when more data comes, so the last chunk is empty only for an empty stream
+      if (count == chunk.length) {
+        writeChunk(false);
+      }
+      int length = Math.min(len, chunk.length - count);
+      System.arraycopy(b, off, chunk, count, length);
+      count += length;
+      off += length;
+      len -= length;
+    }
+  }
+
+  /**
+   * Flush underlying stream, data of the current chunk stays buffered until chunk is full or stream is closed
+   */
+  @Override
+  public void flush() throws IOException {
+    data.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      writeChunk(true);
+      data.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Encrypt and write the current chunk
+   *
+   * @param last boolean
+   * @throws IOException
+   */
+  private void writeChunk(boolean last) throws IOException {
+    if (chunkNo == -1) {
+      throw new IOException("Encryption stream is too long");
+    }
+    byte[] encrypted = cipher.encrypt(chunkNo, last, chunk, count);
+
+    data.writeBoolean(last);
+    data.writeInt(encrypted.length);
+    data.write(encrypted);
+    chunkNo++;
+    count = 0;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
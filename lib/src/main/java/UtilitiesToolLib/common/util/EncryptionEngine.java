@@ -0,0 +1,100 @@
+package UtilitiesToolLib.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Objects;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.codec.binary.Base64;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread-safe legacy AES/ECB encryption engine of one passphrase, kept to read data encrypted before
+ * {@link GcmEncryptionEngine}.<br/>
+ * Secret key is derived once when engine is created, each thread reuses its own initialized cipher.
+ *
+ * @author thaint
+ *
+ */
+@Slf4j
+public class EncryptionEngine {
+
+  private static final String SECRET_KEY_ALGORITHM = "AES";
+
+  /** Key derived from passphrase */
+  private final SecretKey secretKey;
+
+  /** Cipher of each thread initialized for decryption */
+  private final ThreadLocal<Cipher> decryptCipher;
+
+  /**
+   * Create encryption engine
+   *
+   * @param passPhrase String
+   * @throws Exception
+   */
+  public EncryptionEngine(String passPhrase) throws Exception {
+    this.secretKey = PassphraseKeyProvider.generateKey(passPhrase);
+    this.decryptCipher = ThreadLocal.withInitial(() -> createCipher(Cipher.DECRYPT_MODE));
+  }
+
+  /**
+   * Decrypt base64 encoded cipher text
+   *
+   * @param cipherText String
+   * @return String
+   * @throws Exception
+   */
+  public String decrypt(String cipherText) throws Exception {
+    byte[] decrypted = decrypt(Base64.decodeBase64(cipherText));
+    return new String(Objects.requireNonNull(decrypted), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decrypt data
+   *
+   * @param bytes byte[]
+   * @return byte[]
+   * @throws Exception
+   */
+  public byte[] decrypt(byte[] bytes) throws Exception {
+    return doFinal(decryptCipher.get(), bytes);
+  }
+
+  /**
+   * Do final in encryption processing, cipher is ready for the next call afterwards
+   *
+   * @param cipher Cipher
+   * @param bytes byte[]
+   * @return byte[]
+   * @throws Exception
+   */
+  private static byte[] doFinal(Cipher cipher, byte[] bytes) throws Exception {
+    try {
+      return cipher.doFinal(bytes);
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to do final encrypt/decrypt data", e);
+    }
+  }
+
+  /**
+   * Create cipher initialized with secret key
+   *
+   * @param mode int
+   * @return Cipher
+   */
+  private Cipher createCipher(int mode) {
+    try {
+      Cipher cipher = Cipher.getInstance(SECRET_KEY_ALGORITHM);
+      cipher.init(mode, secretKey);
+      return cipher;
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new IllegalStateException("Failed to initialize cipher", e);
+    }
+  }
+}
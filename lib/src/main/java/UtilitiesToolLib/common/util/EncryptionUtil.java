@@ -1,29 +1,25 @@
 package UtilitiesToolLib.common.util;
 
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Objects;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.digest.MessageDigestAlgorithms;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import UtilitiesToolLib.common.constant.CommonConstant;
+import UtilitiesToolLib.common.util.CipherTask.CipherFunction;
+import UtilitiesToolLib.common.util.CipherTask.CipherTaskException;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * AESEncryptionUtil
- * 
+ *
  * @author thaint
  *
  */
@@ -31,32 +27,35 @@ import lombok.extern.slf4j.Slf4j;
 @UtilityClass
 public class EncryptionUtil {
 
-  private static final String SECRET_KEY_ALGORITHM = "AES";
+  /** Id of key derived from the default passphrase */
+  public static final String DEFAULT_KEY_ID = "default";
+
+  /** Engine encrypting new data */
+  private static volatile GcmEncryptionEngine engine =
+      new GcmEncryptionEngine(new PassphraseKeyProvider(DEFAULT_KEY_ID, CommonConstant.ENCRYPTION_PASSPHRASE));
+
+  /** Engine of the default passphrase reading older text, created on first use */
+  private static volatile EncryptionEngine legacyEngine;
 
   /**
-   * Encrypt plain text by passPhase using AES algorithm
-   * 
-   * @param plainText String
-   * @return String
-   * @throws Exception
+   * Replace provider of keys, new data is encrypted by its current key
+   *
+   * @param keyProvider KeyProvider
    */
-  public static String encrypt(String plainText) throws Exception {
-    return encrypt(CommonConstant.ENCRYPTION_PASSPHRASE, plainText);
+  public static void setKeyProvider(KeyProvider keyProvider) {
+    engine = new GcmEncryptionEngine(keyProvider);
   }
 
   /**
-   * Encrypt plain text by passPhase using AES algorithm
-   * 
-   * @param passPhrase String
+   * Encrypt plain text by current key using AES-GCM algorithm
+   *
    * @param plainText String
    * @return String
    * @throws Exception
    */
-  private static String encrypt(String passPhrase, String plainText) throws Exception {
+  public static String encrypt(String plainText) throws Exception {
     try {
-      SecretKey secretKey = generateKey(passPhrase);
-      byte[] encrypted = doFinal(Cipher.ENCRYPT_MODE, secretKey, plainText.getBytes(StandardCharsets.UTF_8));
-      return toBase64(encrypted);
+      return engine.encrypt(plainText);
     } catch (Exception e) {
       log.error(e.getMessage());
       throw new Exception("Failed to encrypt plaintext", e);
@@ -64,94 +63,198 @@ public class EncryptionUtil {
   }
 
   /**
-   * Decrypt plain text by passPhase using AES algorithm
-   * 
+   * Decrypt cipher text, text encrypted by AES-GCM is decrypted by the key it names, older text is decrypted by the
+   * default passphrase using AES/ECB algorithm
+   *
    * @param cipherText String
    * @return String
    * @throws Exception
    */
   public static String decrypt(String cipherText) throws Exception {
-    return decrypt(CommonConstant.ENCRYPTION_PASSPHRASE, cipherText);
+    if (GcmEncryptionEngine.isEnvelope(cipherText)) {
+      try {
+        return engine.decrypt(cipherText);
+      } catch (Exception e) {
+        log.error(e.getMessage());
+        throw new Exception("Failed to decrypt plaintext", e);
+      }
+    }
+    return decryptLegacy(cipherText);
   }
 
   /**
-   * Decrypt plain text by passPhase using AES algorithm
-   * 
-   * @param passPhrase String
-   * @param cipherText String
-   * @return String
+   * Encrypt plain texts by current key on the common fork/join pool
+   *
+   * @param plainTexts List<String>, null values are kept as null
+   * @return List<String> cipher texts in the order of plain texts
+   * @throws Exception
+   */
+  public static List<String> encryptAll(List<String> plainTexts) throws Exception {
+    return encryptAll(plainTexts, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Encrypt plain texts by current key on the specific fork/join pool, parallelism of pool limits the number of threads
+   * used
+   *
+   * @param plainTexts List<String>, null values are kept as null
+   * @param pool ForkJoinPool
+   * @return List<String> cipher texts in the order of plain texts
+   * @throws Exception
+   */
+  public static List<String> encryptAll(List<String> plainTexts, ForkJoinPool pool) throws Exception {
+    // All values are encrypted by the same key even if provider is replaced meanwhile
+    GcmEncryptionEngine current = engine;
+    return processAll(current::encrypt, plainTexts, pool, "Failed to encrypt plaintexts");
+  }
+
+  /**
+   * Encrypt plain texts by current key on the specific fork/join pool
+   *
+   * @param plainTexts Stream<String>, null values are kept as null
+   * @param pool ForkJoinPool
+   * @return List<String> cipher texts in the encounter order of plain texts
+   * @throws Exception
+   */
+  public static List<String> encryptAll(Stream<String> plainTexts, ForkJoinPool pool) throws Exception {
+    return encryptAll(plainTexts.collect(Collectors.toList()), pool);
+  }
+
+  /**
+   * Decrypt cipher texts on the common fork/join pool, see {@link #decrypt(String)}
+   *
+   * @param cipherTexts List<String>, null values are kept as null
+   * @return List<String> plain texts in the order of cipher texts
+   * @throws Exception
+   */
+  public static List<String> decryptAll(List<String> cipherTexts) throws Exception {
+    return decryptAll(cipherTexts, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decrypt cipher texts on the specific fork/join pool, see {@link #decrypt(String)}
+   *
+   * @param cipherTexts List<String>, null values are kept as null
+   * @param pool ForkJoinPool
+   * @return List<String> plain texts in the order of cipher texts
+   * @throws Exception
+   */
+  public static List<String> decryptAll(List<String> cipherTexts, ForkJoinPool pool) throws Exception {
+    return processAll(EncryptionUtil::decrypt, cipherTexts, pool, "Failed to decrypt plaintexts");
+  }
+
+  /**
+   * Decrypt cipher texts on the specific fork/join pool, see {@link #decrypt(String)}
+   *
+   * @param cipherTexts Stream<String>, null values are kept as null
+   * @param pool ForkJoinPool
+   * @return List<String> plain texts in the encounter order of cipher texts
    * @throws Exception
    */
-  private static String decrypt(String passPhrase, String cipherText) throws Exception {
+  public static List<String> decryptAll(Stream<String> cipherTexts, ForkJoinPool pool) throws Exception {
+    return decryptAll(cipherTexts.collect(Collectors.toList()), pool);
+  }
+
+  /**
+   * Apply function to all values on fork/join pool, each thread reuses its own ciphers
+   *
+   * @param function CipherFunction
+   * @param values List<String>
+   * @param pool ForkJoinPool
+   * @param message String message of failure
+   * @return List<String>
+   * @throws Exception
+   */
+  private static List<String> processAll(CipherFunction function, List<String> values, ForkJoinPool pool,
+      String message) throws Exception {
+    // Values are read by index from several threads
+    List<String> input = values instanceof RandomAccess ? values : new ArrayList<>(values);
+    String[] results = new String[input.size()];
+
     try {
-      SecretKey key = generateKey(passPhrase);
-      byte[] encrypted = fromBase64(cipherText);
-      byte[] decrypted = doFinal(Cipher.DECRYPT_MODE, key, encrypted);
-      return new String(Objects.requireNonNull(decrypted), StandardCharsets.UTF_8);
-    } catch (Exception e) {
+      pool.invoke(new CipherTask(function, input, results, 0, results.length));
+    } catch (CipherTaskException e) {
       log.error(e.getMessage());
-      throw new Exception("Failed to decrypt plaintext", e);
+      throw new Exception(message, e.getCause());
     }
+    return Arrays.asList(results);
   }
 
   /**
-   * Generate secret key using SHA-256 hash algorithm
-   * 
-   * @param privateKey String
-   * @return SecretKey
+   * Encrypt all data of input stream into output stream by current key, data is processed chunk by chunk so it is
+   * never held in memory at once. Both streams are closed.
+   *
+   * @param in InputStream
+   * @param out OutputStream
    * @throws Exception
    */
-  private static SecretKey generateKey(String passPhrase) throws Exception {
-    try {
-      byte[] key = passPhrase.getBytes(CommonConstant.UTF_8);
-      MessageDigest sha256 = MessageDigest.getInstance(MessageDigestAlgorithms.SHA_256);
-      key = sha256.digest(key);
-      return new SecretKeySpec(key, SECRET_KEY_ALGORITHM);
-    } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+  public static void encrypt(InputStream in, OutputStream out) throws Exception {
+    try (InputStream input = in; OutputStream output = engine.encryptingStream(out)) {
+      input.transferTo(output);
+    } catch (Exception e) {
       log.error(e.getMessage());
-      throw new Exception("Failed to generate secret key encode", e);
+      throw new Exception("Failed to encrypt stream", e);
     }
   }
 
   /**
-   * Do final in encryption processing
-   * 
-   * @param mode int
-   * @param secretKey SecretKey
-   * @param bytes byte[]
-   * @return byte[]
+   * Decrypt all data of input stream written by {@link #encrypt(InputStream, OutputStream)} into output stream. Both
+   * streams are closed.
+   *
+   * @param in InputStream
+   * @param out OutputStream
    * @throws Exception
    */
-  private static byte[] doFinal(int mode, SecretKey secretKey, byte[] bytes) throws Exception {
-    try {
-      Cipher cipher = Cipher.getInstance(SECRET_KEY_ALGORITHM);
-      cipher.init(mode, secretKey);
-      return cipher.doFinal(bytes);
-    } catch (IllegalBlockSizeException | BadPaddingException | InvalidKeyException | NoSuchAlgorithmException
-        | NoSuchPaddingException e) {
+  public static void decrypt(InputStream in, OutputStream out) throws Exception {
+    try (InputStream input = engine.decryptingStream(in); OutputStream output = out) {
+      input.transferTo(output);
+    } catch (Exception e) {
       log.error(e.getMessage());
-      throw new Exception("Failed to do final encrypt/decrypt data", e);
+      throw new Exception("Failed to decrypt stream", e);
     }
   }
 
   /**
-   * Convert base64 to byte array
-   * 
-   * @param str String
-   * @return byte[]
+   * Wrap stream so data written into it is encrypted by current key
+   *
+   * @param out OutputStream
+   * @return OutputStream, must be closed to complete encryption
+   * @throws IOException
    */
-  private static byte[] fromBase64(String str) {
-    return new Base64().decode(str);
+  public static OutputStream encryptingStream(OutputStream out) throws IOException {
+    return engine.encryptingStream(out);
   }
 
   /**
-   * Convert byte array to base64
-   * 
-   * @param ba byte[]
-   * @return String
+   * Wrap stream written by {@link #encryptingStream(OutputStream)} so data read from it is decrypted
+   *
+   * @param in InputStream
+   * @return InputStream
+   * @throws IOException
    */
-  private static String toBase64(byte[] ba) {
-    return new Base64().encodeToString(ba);
+  public static InputStream decryptingStream(InputStream in) throws IOException {
+    return engine.decryptingStream(in);
   }
 
+  /**
+   * Decrypt older text by the default passphrase using AES algorithm
+   *
+   * @param cipherText String
+   * @return String
+   * @throws Exception
+   */
+  private static String decryptLegacy(String cipherText) throws Exception {
+    try {
+      EncryptionEngine legacy = legacyEngine;
+      if (legacy == null) {
+        // Concurrent first calls may derive the key twice, either engine can be kept
+        legacy = new EncryptionEngine(CommonConstant.ENCRYPTION_PASSPHRASE);
+        legacyEngine = legacy;
+      }
+      return legacy.decrypt(cipherText);
+    } catch (Exception e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to decrypt plaintext", e);
+    }
+  }
 }
@@ -0,0 +1,330 @@
+package UtilitiesToolLib.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Objects;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread-safe authenticated AES-GCM encryption engine.<br/>
+ * Each value is stored in a versioned envelope:
+ * <ul>
+ * <li>1 byte: version of envelope</li>
+ * <li>1 byte: length of key id, followed by key id in UTF-8</li>
+ * <li>12 bytes: random IV</li>
+ * <li>n bytes: cipher text followed by 16 bytes authentication tag</li>
+ * </ul>
+ * Version and key id are authenticated together with data, so they can not be changed without failing decryption.
+ * Large data is encrypted as a stream of chunks, see {@link #encryptingStream(OutputStream)}.
+ *
+ * @author thaint
+ *
+ */
+@Slf4j
+public class GcmEncryptionEngine {
+
+  /** Marker starting text form of envelope, never produced by base64 of legacy cipher text */
+  public static final String TEXT_PREFIX = "$";
+
+  /** Version of envelope */
+  static final byte VERSION = 1;
+
+  /** Version of chunked stream */
+  static final byte STREAM_VERSION = 2;
+
+  /** Size of plain data of each chunk of stream in byte */
+  static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+  static final int IV_LENGTH = 12;
+
+  static final int TAG_LENGTH_BIT = 128;
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /** Provider of keys by id */
+  @Getter
+  private final KeyProvider keyProvider;
+
+  /** Cipher of each thread, initialized again for each value since IV changes */
+  private final ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(GcmEncryptionEngine::createCipher);
+
+  /**
+   * Create encryption engine
+   *
+   * @param keyProvider KeyProvider
+   */
+  public GcmEncryptionEngine(KeyProvider keyProvider) {
+    this.keyProvider = keyProvider;
+  }
+
+  /**
+   * Check whether text has been produced by {@link #encrypt(String)}
+   *
+   * @param cipherText String
+   * @return boolean
+   */
+  public static boolean isEnvelope(String cipherText) {
+    return cipherText != null && cipherText.startsWith(TEXT_PREFIX);
+  }
+
+  /**
+   * Encrypt plain text into text form of envelope
+   *
+   * @param plainText String
+   * @return String
+   * @throws Exception
+   */
+  public String encrypt(String plainText) throws Exception {
+    return TEXT_PREFIX + Base64.getEncoder().encodeToString(encrypt(plainText.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Decrypt text form of envelope
+   *
+   * @param cipherText String
+   * @return String
+   * @throws Exception
+   */
+  public String decrypt(String cipherText) throws Exception {
+    if (!isEnvelope(cipherText)) {
+      throw new Exception("Cipher text is not an encryption envelope");
+    }
+    byte[] decrypted = decrypt(Base64.getDecoder().decode(cipherText.substring(TEXT_PREFIX.length())));
+    return new String(Objects.requireNonNull(decrypted), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Encrypt data into envelope by current key
+   *
+   * @param bytes byte[]
+   * @return byte[]
+   * @throws Exception
+   */
+  public byte[] encrypt(byte[] bytes) throws Exception {
+    String keyId = keyProvider.getCurrentKeyId();
+    byte[] header = createHeader(VERSION, keyId);
+    byte[] iv = new byte[IV_LENGTH];
+    RANDOM.nextBytes(iv);
+
+    try {
+      Cipher encryptor = cipher.get();
+      encryptor.init(Cipher.ENCRYPT_MODE, keyProvider.getKey(keyId), new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+      encryptor.updateAAD(header);
+
+      ByteBuffer envelope = ByteBuffer.allocate(header.length + IV_LENGTH + encryptor.getOutputSize(bytes.length));
+      envelope.put(header).put(iv);
+      encryptor.doFinal(ByteBuffer.wrap(bytes), envelope);
+      return envelope.array();
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to do final encrypt/decrypt data", e);
+    }
+  }
+
+  /**
+   * Decrypt envelope by the key it names
+   *
+   * @param envelope byte[]
+   * @return byte[]
+   * @throws Exception if envelope is not supported or has been changed
+   */
+  public byte[] decrypt(byte[] envelope) throws Exception {
+    int headerLength = readHeaderLength(envelope);
+
+    if (envelope.length < headerLength + IV_LENGTH) {
+      throw new Exception("Encryption envelope is truncated");
+    }
+    String keyId = new String(envelope, 2, headerLength - 2, StandardCharsets.UTF_8);
+
+    try {
+      Cipher decryptor = cipher.get();
+      decryptor.init(Cipher.DECRYPT_MODE, keyProvider.getKey(keyId),
+          new GCMParameterSpec(TAG_LENGTH_BIT, envelope, headerLength, IV_LENGTH));
+      decryptor.updateAAD(envelope, 0, headerLength);
+      return decryptor.doFinal(envelope, headerLength + IV_LENGTH, envelope.length - headerLength - IV_LENGTH);
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to do final encrypt/decrypt data", e);
+    }
+  }
+
+  /**
+   * Encrypt data into envelope by current key, direct buffer gets a direct result so data does not go through heap
+   *
+   * @param bytes ByteBuffer remaining data is encrypted
+   * @return ByteBuffer ready to be read
+   * @throws Exception
+   */
+  public ByteBuffer encrypt(ByteBuffer bytes) throws Exception {
+    String keyId = keyProvider.getCurrentKeyId();
+    byte[] header = createHeader(VERSION, keyId);
+    byte[] iv = new byte[IV_LENGTH];
+    RANDOM.nextBytes(iv);
+
+    try {
+      Cipher encryptor = cipher.get();
+      encryptor.init(Cipher.ENCRYPT_MODE, keyProvider.getKey(keyId), new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+      encryptor.updateAAD(header);
+
+      int length = header.length + IV_LENGTH + encryptor.getOutputSize(bytes.remaining());
+      ByteBuffer envelope = bytes.isDirect() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+      envelope.put(header).put(iv);
+      encryptor.doFinal(bytes, envelope);
+      envelope.flip();
+      return envelope;
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to do final encrypt/decrypt data", e);
+    }
+  }
+
+  /**
+   * Decrypt envelope by the key it names, direct buffer gets a direct result so data does not go through heap
+   *
+   * @param envelope ByteBuffer remaining data is decrypted
+   * @return ByteBuffer ready to be read
+   * @throws Exception if envelope is not supported or has been changed
+   */
+  public ByteBuffer decrypt(ByteBuffer envelope) throws Exception {
+    byte[] prefix = new byte[Math.min(envelope.remaining(), 2)];
+    envelope.duplicate().get(prefix);
+    int headerLength = readHeaderLength(prefix);
+
+    if (envelope.remaining() < headerLength + IV_LENGTH) {
+      throw new Exception("Encryption envelope is truncated");
+    }
+    byte[] header = new byte[headerLength];
+    byte[] iv = new byte[IV_LENGTH];
+    envelope.get(header).get(iv);
+    String keyId = new String(header, 2, headerLength - 2, StandardCharsets.UTF_8);
+
+    try {
+      Cipher decryptor = cipher.get();
+      decryptor.init(Cipher.DECRYPT_MODE, keyProvider.getKey(keyId), new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+      decryptor.updateAAD(header);
+
+      int length = decryptor.getOutputSize(envelope.remaining());
+      ByteBuffer decrypted = envelope.isDirect() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+      decryptor.doFinal(envelope, decrypted);
+      decrypted.flip();
+      return decrypted;
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to do final encrypt/decrypt data", e);
+    }
+  }
+
+  /**
+   * Wrap stream so data written into it is encrypted by current key in chunks, nothing is held in memory besides one
+   * chunk. Stream must be closed to write the last chunk.
+   *
+   * @param out OutputStream receiving encrypted data
+   * @return OutputStream
+   * @throws IOException
+   */
+  public OutputStream encryptingStream(OutputStream out) throws IOException {
+    return encryptingStream(out, keyProvider.getCurrentKeyId());
+  }
+
+  /**
+   * Wrap stream so data written into it is encrypted in chunks by the specific key, so caller can record which key
+   * protects the stream
+   *
+   * @param out OutputStream receiving encrypted data
+   * @param keyId String
+   * @return OutputStream
+   * @throws IOException
+   */
+  public OutputStream encryptingStream(OutputStream out, String keyId) throws IOException {
+    try {
+      return new EncryptingOutputStream(out, keyId, keyProvider.getKey(keyId), DEFAULT_CHUNK_SIZE);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Failed to initialize encryption stream", e);
+    }
+  }
+
+  /**
+   * Wrap stream written by {@link #encryptingStream(OutputStream)} so data read from it is decrypted chunk by chunk
+   *
+   * @param in InputStream providing encrypted data
+   * @return InputStream
+   * @throws IOException if stream is not supported, has been changed or truncated
+   */
+  public InputStream decryptingStream(InputStream in) throws IOException {
+    return new DecryptingInputStream(in, keyProvider);
+  }
+
+  /**
+   * Create random access reader of stream written by {@link #encryptingStream(OutputStream)}, a read only decrypts the
+   * chunks containing the requested data
+   *
+   * @param source DecryptingPositionalReader.Source providing encrypted data
+   * @return DecryptingPositionalReader
+   */
+  public DecryptingPositionalReader positionalReader(DecryptingPositionalReader.Source source) {
+    return new DecryptingPositionalReader(source, keyProvider);
+  }
+
+  /**
+   * Build version and key id part of envelope or stream
+   *
+   * @param version byte
+   * @param keyId String
+   * @return byte[]
+   */
+  static byte[] createHeader(byte version, String keyId) {
+    byte[] keyIdBytes = keyId.getBytes(StandardCharsets.UTF_8);
+
+    if (keyIdBytes.length > 255) {
+      throw new IllegalArgumentException("Key id is too long: " + keyId);
+    }
+    byte[] header = new byte[keyIdBytes.length + 2];
+    header[0] = version;
+    header[1] = (byte) keyIdBytes.length;
+    System.arraycopy(keyIdBytes, 0, header, 2, keyIdBytes.length);
+    return header;
+  }
+
+  /**
+   * Get length of version and key id part of envelope
+   *
+   * @param envelope byte[]
+   * @return int
+   * @throws Exception if version is not supported
+   */
+  static int readHeaderLength(byte[] envelope) throws Exception {
+    if (envelope.length < 2 || envelope[0] != VERSION) {
+      throw new Exception("Unsupported encryption envelope");
+    }
+    return (envelope[1] & 0xFF) + 2;
+  }
+
+  /**
+   * Create cipher of this thread
+   *
+   * @return Cipher
+   */
+  private static Cipher createCipher() {
+    try {
+      return Cipher.getInstance(TRANSFORMATION);
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new IllegalStateException("Failed to initialize cipher", e);
+    }
+  }
+}
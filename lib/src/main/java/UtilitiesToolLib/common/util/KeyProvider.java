@@ -0,0 +1,28 @@
+package UtilitiesToolLib.common.util;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Provider of encryption keys by id, so keys can be rotated while data encrypted by older keys is still decrypted
+ *
+ * @author thaint
+ *
+ */
+public interface KeyProvider {
+
+  /**
+   * Get id of key used to encrypt new data
+   *
+   * @return String
+   */
+  String getCurrentKeyId();
+
+  /**
+   * Get key of the specific id, implementations should cache keys since this is called for each value
+   *
+   * @param keyId String
+   * @return SecretKey
+   * @throws Exception if key does not exist
+   */
+  SecretKey getKey(String keyId) throws Exception;
+}
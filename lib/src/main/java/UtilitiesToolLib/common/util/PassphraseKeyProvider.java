@@ -0,0 +1,99 @@
+package UtilitiesToolLib.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.digest.MessageDigestAlgorithms;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Key provider deriving AES keys from passphrases by SHA-256, each key is derived once
+ *
+ * @author thaint
+ *
+ */
+@Slf4j
+public class PassphraseKeyProvider implements KeyProvider {
+
+  private static final String SECRET_KEY_ALGORITHM = "AES";
+
+  /** Passphrase of each key id */
+  private final Map<String, String> passPhrases;
+
+  /** Id of key used to encrypt new data */
+  private final String currentKeyId;
+
+  /** Derived keys by id */
+  private final Map<String, SecretKey> keys = new ConcurrentHashMap<>();
+
+  /**
+   * Create key provider
+   *
+   * @param passPhrases Map<String, String> passphrase of each key id
+   * @param currentKeyId String id of key used to encrypt new data
+   */
+  public PassphraseKeyProvider(Map<String, String> passPhrases, String currentKeyId) {
+    if (!passPhrases.containsKey(currentKeyId)) {
+      throw new IllegalArgumentException("Passphrase of current key " + currentKeyId + " is missing");
+    }
+    this.passPhrases = Collections.unmodifiableMap(new HashMap<>(passPhrases));
+    this.currentKeyId = currentKeyId;
+  }
+
+  /**
+   * Create key provider of a single passphrase
+   *
+   * @param keyId String
+   * @param passPhrase String
+   */
+  public PassphraseKeyProvider(String keyId, String passPhrase) {
+    this(Collections.singletonMap(keyId, passPhrase), keyId);
+  }
+
+  @Override
+  public String getCurrentKeyId() {
+    return currentKeyId;
+  }
+
+  @Override
+  public SecretKey getKey(String keyId) throws Exception {
+    SecretKey key = keys.get(keyId);
+
+    if (key == null) {
+      String passPhrase = passPhrases.get(keyId);
+      if (passPhrase == null) {
+        throw new Exception("Unknown encryption key " + keyId);
+      }
+      key = generateKey(passPhrase);
+      keys.put(keyId, key);
+    }
+    return key;
+  }
+
+  /**
+   * Generate secret key using SHA-256 hash algorithm
+   *
+   * @param passPhrase String
+   * @return SecretKey
+   * @throws Exception
+   */
+  static SecretKey generateKey(String passPhrase) throws Exception {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance(MessageDigestAlgorithms.SHA_256);
+      byte[] key = sha256.digest(passPhrase.getBytes(StandardCharsets.UTF_8));
+      return new SecretKeySpec(key, SECRET_KEY_ALGORITHM);
+    } catch (GeneralSecurityException e) {
+      log.error(e.getMessage());
+      throw new Exception("Failed to generate secret key encode", e);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread safe temporary storage <br/>
+ * Keys are striped across several temporary storages, each stripe has its own active partition and lock so threads
+ * working on different stripes do not block each other
+ * 
+ */
+@Slf4j
+public class ConcurrentTemporaryStorage<K, T> extends AbstractTemporaryStorage<K, T> implements Closeable {
+
+  /** Storage of each stripe */
+  private List<TemporaryStorage<K, T>> stripes;
+
+  /** Lock of each stripe */
+  private ReentrantLock[] locks;
+
+  protected ConcurrentTemporaryStorage(long limitSize, boolean compress) {
+    this(TemporaryStorageConfig.builder().limitSize(limitSize).compress(compress).build());
+  }
+
+  protected ConcurrentTemporaryStorage(TemporaryStorageConfig config) {
+    super();
+    initialize(config);
+  }
+
+  protected ConcurrentTemporaryStorage(TemporaryStorageConfig config, Class<K> clazzKey, Class<T> clazzValue) {
+    super(clazzKey, clazzValue);
+    initialize(config);
+  }
+
+  /**
+   * Initialize stripes, memory budget of configuration is shared among all stripes
+   * 
+   * @param config TemporaryStorageConfig
+   */
+  private void initialize(TemporaryStorageConfig config) {
+    if (config.isDurable()) {
+      // Stripes would share one manifest and remove files of each other as orphans
+      throw new IllegalArgumentException("Durable mode is not supported by concurrent temporary storage");
+    }
+    int concurrencyLevel = Math.max(config.getConcurrencyLevel(), 1);
+    TemporaryStorageConfig stripeConfig = config.toBuilder()
+        .limitSize(config.getLimitSize() / concurrencyLevel)
+        .maxResidentPartitions(Math.max(config.getMaxResidentPartitions() / concurrencyLevel, 1))
+        .maxResidentBytes(config.getMaxResidentBytes() / concurrencyLevel)
+        .build();
+
+    stripes = new ArrayList<>(concurrencyLevel);
+    locks = new ReentrantLock[concurrencyLevel];
+
+    for (int i = 0; i < concurrencyLevel; i++) {
+      stripes.add(new TemporaryStorage<K, T>(stripeConfig, getClazzKey(), getClazzValue()));
+      locks[i] = new ReentrantLock();
+    }
+    log.info("Concurrent temporary storage: {} stripes have been created", concurrencyLevel);
+  }
+
+  /**
+   * Close all resources after used
+   */
+  @Override
+  public void close() {
+    for (int i = 0; i < stripes.size(); i++) {
+      locks[i].lock();
+      try {
+        stripes.get(i).close();
+      } finally {
+        locks[i].unlock();
+      }
+    }
+  }
+
+  /**
+   * Add data with specific key into partition of its stripe
+   * 
+   * @param key K
+   * @param value T
+   * @throws Exception
+   */
+  public void add(final K key, final T value) throws Exception {
+    if (key == null) {
+      throw new IllegalArgumentException("Key can not be null");
+    }
+    if (value == null) {
+      throw new IllegalArgumentException("Value can not be null");
+    }
+    int stripe = getStripe(key);
+
+    locks[stripe].lock();
+    try {
+      stripes.get(stripe).add(key, value);
+    } finally {
+      locks[stripe].unlock();
+    }
+  }
+
+  /**
+   * Get data associated with the specific key
+   * 
+   * @param key K
+   * @return T
+   */
+  public T get(final K key) {
+    if (key == null) {
+      throw new IllegalArgumentException("Key can not be null");
+    }
+    int stripe = getStripe(key);
+
+    locks[stripe].lock();
+    try {
+      return stripes.get(stripe).get(key);
+    } finally {
+      locks[stripe].unlock();
+    }
+  }
+
+  /**
+   * Remove data associated with the specific key
+   * 
+   * @param key K
+   * @return boolean true if key existed
+   * @throws Exception
+   */
+  public boolean remove(final K key) throws Exception {
+    if (key == null) {
+      throw new IllegalArgumentException("Key can not be null");
+    }
+    int stripe = getStripe(key);
+
+    locks[stripe].lock();
+    try {
+      return stripes.get(stripe).remove(key);
+    } finally {
+      locks[stripe].unlock();
+    }
+  }
+
+  /**
+   * Check whether value associated with specific key is existed or not
+   * 
+   * @param key K
+   * @return boolean
+   */
+  public boolean containsKey(final K key) {
+    if (key == null) {
+      return false;
+    }
+    int stripe = getStripe(key);
+
+    locks[stripe].lock();
+    try {
+      return stripes.get(stripe).containsKey(key);
+    } finally {
+      locks[stripe].unlock();
+    }
+  }
+
+  /**
+   * Get statistics of partition cache summed over all stripes
+   * 
+   * @return TemporaryStorageStatistics
+   */
+  public TemporaryStorageStatistics getStatistics() {
+    TemporaryStorageStatistics statistics = new TemporaryStorageStatistics();
+
+    for (int i = 0; i < stripes.size(); i++) {
+      locks[i].lock();
+      try {
+        statistics.merge(stripes.get(i).getStatistics());
+      } finally {
+        locks[i].unlock();
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * Get stripe owning the specific key
+   * 
+   * @param key K
+   * @return int
+   */
+  private int getStripe(final K key) {
+    return Math.floorMod(KeyIndex.mix(key.hashCode()), stripes.size());
+  }
+}
@@ -0,0 +1,131 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Open addressing key index, keeps only key reference and location per record without any entry object
+ * 
+ * @param <K> type of key
+ */
+class HashKeyIndex<K> implements KeyIndex<K> {
+
+  /** Initial capacity of table, must be power of two */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Maximum load factor of table */
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private Object[] keys;
+
+  private long[] locations;
+
+  private int size;
+
+  HashKeyIndex() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  @Override
+  public long get(K key) {
+    int mask = keys.length - 1;
+    int index = KeyIndex.mix(key.hashCode()) & mask;
+    Object current;
+
+    while ((current = keys[index]) != null) {
+      if (current.equals(key)) {
+        return locations[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return NOT_FOUND;
+  }
+
+  @Override
+  public void put(K key, long location) {
+    int mask = keys.length - 1;
+    int index = KeyIndex.mix(key.hashCode()) & mask;
+    Object current;
+
+    while ((current = keys[index]) != null) {
+      if (current.equals(key)) {
+        locations[index] = location;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[index] = key;
+    locations[index] = location;
+
+    if (++size > keys.length * LOAD_FACTOR) {
+      resize(keys.length << 1);
+    }
+  }
+
+  @Override
+  public void remove(K key) {
+    int mask = keys.length - 1;
+    int index = KeyIndex.mix(key.hashCode()) & mask;
+    Object current;
+
+    while ((current = keys[index]) != null) {
+      if (current.equals(key)) {
+        // Shift following keys of the same probe sequence back, so lookups never stop at the freed slot
+        int gap = index;
+        int next = index;
+
+        while (keys[next = (next + 1) & mask] != null) {
+          int home = KeyIndex.mix(keys[next].hashCode()) & mask;
+          if (((next - home) & mask) >= ((next - gap) & mask)) {
+            keys[gap] = keys[next];
+            locations[gap] = locations[next];
+            gap = next;
+          }
+        }
+        keys[gap] = null;
+        size--;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(ObjLongConsumer<K> action) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        action.accept((K) keys[i], locations[i]);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new Object[capacity];
+    locations = new long[capacity];
+    size = 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void resize(int capacity) {
+    Object[] oldKeys = keys;
+    long[] oldLocations = locations;
+
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        put((K) oldKeys[i], oldLocations[i]);
+      }
+    }
+  }
+}
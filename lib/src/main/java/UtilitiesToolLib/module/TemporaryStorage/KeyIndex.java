@@ -0,0 +1,141 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Index of key and location of its record inside temporary storage
+ * 
+ * @param <K> type of key
+ */
+interface KeyIndex<K> {
+
+  /** Location returned when key does not exist in index */
+  long NOT_FOUND = -1L;
+
+  /**
+   * Get location of record associated with the specific key
+   * 
+   * @param key K
+   * @return long, {@link #NOT_FOUND} if key does not exist
+   */
+  long get(K key);
+
+  /**
+   * Associate location of record with the specific key
+   * 
+   * @param key K
+   * @param location long, must not be {@link #NOT_FOUND}
+   */
+  void put(K key, long location);
+
+  /**
+   * Remove the specific key from index
+   * 
+   * @param key K
+   */
+  void remove(K key);
+
+  /**
+   * Perform the given action for each key and its location
+   * 
+   * @param action ObjLongConsumer<K>
+   */
+  void forEach(ObjLongConsumer<K> action);
+
+  /**
+   * Get number of keys in index
+   * 
+   * @return int
+   */
+  int size();
+
+  /**
+   * Remove all keys from index
+   */
+  void clear();
+
+  /**
+   * Create index suitable for the specific key type
+   * 
+   * @param clazzKey Class<K>
+   * @return KeyIndex<K>
+   */
+  static <K> KeyIndex<K> create(Class<K> clazzKey) {
+    if (Long.class.equals(clazzKey) || Integer.class.equals(clazzKey)) {
+      return new LongKeyIndex<>(Integer.class.equals(clazzKey));
+    }
+    return new HashKeyIndex<>();
+  }
+
+  /**
+   * Build location from partition number and ordinal of record inside partition
+   * 
+   * @param partitionNo int
+   * @param ordinal int
+   * @return long
+   */
+  static long toLocation(int partitionNo, int ordinal) {
+    return ((long) partitionNo << 32) | (ordinal & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Build marker of record which has been removed from the specific location, the ordinal stays reserved for the key
+   * 
+   * @param location long
+   * @return long
+   */
+  static long toRemoved(long location) {
+    return -2 - location;
+  }
+
+  /**
+   * Check whether value of index is a marker of removed record
+   * 
+   * @param location long
+   * @return boolean
+   */
+  static boolean isRemoved(long location) {
+    return location < NOT_FOUND;
+  }
+
+  /**
+   * Get location from marker of removed record
+   * 
+   * @param removed long
+   * @return long
+   */
+  static long fromRemoved(long removed) {
+    return -2 - removed;
+  }
+
+  /**
+   * Get partition number from location
+   * 
+   * @param location long
+   * @return int
+   */
+  static int getPartitionNo(long location) {
+    return (int) (location >>> 32);
+  }
+
+  /**
+   * Get ordinal of record inside partition from location
+   * 
+   * @param location long
+   * @return int
+   */
+  static int getOrdinal(long location) {
+    return (int) location;
+  }
+
+  /**
+   * Spread bits of hash code for open addressing table
+   * 
+   * @param hash int
+   * @return int
+   */
+  static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
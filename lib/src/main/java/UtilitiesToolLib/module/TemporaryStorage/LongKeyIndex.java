@@ -0,0 +1,164 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Open addressing key index for integer and long keys, keys are stored as primitive values without boxing
+ * 
+ * @param <K> type of key, Integer or Long
+ */
+class LongKeyIndex<K> implements KeyIndex<K> {
+
+  /** Initial capacity of table, must be power of two */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Maximum load factor of table */
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private long[] keys;
+
+  /** Location of each slot, {@link KeyIndex#NOT_FOUND} marks an empty slot */
+  private long[] locations;
+
+  private int size;
+
+  /** Flag indicates whether keys are Integer instead of Long */
+  private final boolean intKeys;
+
+  LongKeyIndex(boolean intKeys) {
+    this.intKeys = intKeys;
+    allocate(INITIAL_CAPACITY);
+  }
+
+  @Override
+  public long get(K key) {
+    return get(((Number) key).longValue());
+  }
+
+  @Override
+  public void put(K key, long location) {
+    put(((Number) key).longValue(), location);
+  }
+
+  @Override
+  public void remove(K key) {
+    remove(((Number) key).longValue());
+  }
+
+  /**
+   * Get location of record associated with the specific key
+   * 
+   * @param key long
+   * @return long, {@link KeyIndex#NOT_FOUND} if key does not exist
+   */
+  public long get(long key) {
+    int mask = keys.length - 1;
+    int index = KeyIndex.mix(Long.hashCode(key)) & mask;
+
+    while (locations[index] != NOT_FOUND) {
+      if (keys[index] == key) {
+        return locations[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return NOT_FOUND;
+  }
+
+  /**
+   * Associate location of record with the specific key
+   * 
+   * @param key long
+   * @param location long, must not be {@link KeyIndex#NOT_FOUND}
+   */
+  public void put(long key, long location) {
+    int mask = keys.length - 1;
+    int index = KeyIndex.mix(Long.hashCode(key)) & mask;
+
+    while (locations[index] != NOT_FOUND) {
+      if (keys[index] == key) {
+        locations[index] = location;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[index] = key;
+    locations[index] = location;
+
+    if (++size > keys.length * LOAD_FACTOR) {
+      resize(keys.length << 1);
+    }
+  }
+
+  /**
+   * Remove the specific key from index
+   * 
+   * @param key long
+   */
+  public void remove(long key) {
+    int mask = keys.length - 1;
+    int index = KeyIndex.mix(Long.hashCode(key)) & mask;
+
+    while (locations[index] != NOT_FOUND) {
+      if (keys[index] == key) {
+        // Shift following keys of the same probe sequence back, so lookups never stop at the freed slot
+        int gap = index;
+        int next = index;
+
+        while (locations[next = (next + 1) & mask] != NOT_FOUND) {
+          int home = KeyIndex.mix(Long.hashCode(keys[next])) & mask;
+          if (((next - home) & mask) >= ((next - gap) & mask)) {
+            keys[gap] = keys[next];
+            locations[gap] = locations[next];
+            gap = next;
+          }
+        }
+        locations[gap] = NOT_FOUND;
+        size--;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(ObjLongConsumer<K> action) {
+    for (int i = 0; i < keys.length; i++) {
+      if (locations[i] != NOT_FOUND) {
+        Object key = intKeys ? Integer.valueOf((int) keys[i]) : (Object) Long.valueOf(keys[i]);
+        action.accept((K) key, locations[i]);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    locations = new long[capacity];
+    Arrays.fill(locations, NOT_FOUND);
+    size = 0;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    long[] oldLocations = locations;
+
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldLocations[i] != NOT_FOUND) {
+        put(oldKeys[i], oldLocations[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Monitor of heap usage after garbage collection, the instance listening to collectors is shared by all storages of
+ * the JVM.<br/>
+ * Usage is measured on heap pools holding long lived objects right after each collection, so it reflects data which
+ * is actually retained.
+ */
+class MemoryPressureMonitor implements NotificationListener {
+
+  /** Highest ratio of used to maximum size of tenured heap pools after last collection */
+  private volatile double usageRatio;
+
+  /** Number of collections observed, lets storages react once per collection */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Create monitor which only observes usage given to {@link #record(double)}, so a storage can be driven without
+   * affecting other storages
+   */
+  MemoryPressureMonitor() {
+  }
+
+  /**
+   * Register monitor as listener of all garbage collectors
+   * 
+   * @return MemoryPressureMonitor
+   */
+  private MemoryPressureMonitor listen() {
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter) {
+        ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Get monitor of the JVM, listeners are registered by first call
+   * 
+   * @return MemoryPressureMonitor
+   */
+  static MemoryPressureMonitor getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    record(getCollectionUsageRatio());
+  }
+
+  /**
+   * Record usage ratio observed after a collection
+   * 
+   * @param ratio double
+   */
+  void record(double ratio) {
+    usageRatio = ratio;
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Get highest usage ratio of tenured heap pools after last collection
+   * 
+   * @return double
+   */
+  double getUsageRatio() {
+    return usageRatio;
+  }
+
+  /**
+   * Get number of collections observed
+   * 
+   * @return long
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Read usage ratio of tenured heap pools after their last collection, young pools are skipped since they are always
+   * close to full or empty
+   * 
+   * @return double
+   */
+  private static double getCollectionUsageRatio() {
+    double ratio = 0;
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      // Only tenured pools support usage threshold
+      if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+          && pool.isCollectionUsageThresholdSupported()) {
+        MemoryUsage usage = pool.getCollectionUsage();
+        if (usage != null && usage.getMax() > 0) {
+          ratio = Math.max(ratio, (double) usage.getUsed() / usage.getMax());
+        }
+      }
+    }
+    return ratio;
+  }
+
+  private static class Holder {
+    private static final MemoryPressureMonitor INSTANCE = new MemoryPressureMonitor().listen();
+  }
+}
@@ -0,0 +1,165 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of runs sorted by key.<br/>
+ * When a key exists in several runs only the record of the newest run is considered, runs are given from the oldest
+ * to the newest one.
+ *
+ * @param <K> type of key
+ * @param <T> type of value
+ */
+class MergeIterator<K, T> implements Iterator<Map.Entry<K, T>>, Closeable {
+
+  /** Comparator of keys */
+  private final Comparator<? super K> comparator;
+
+  /** Filter deciding whether the newest record of a key is returned */
+  private final RecordFilter<K, T> filter;
+
+  /** Runs which still have records, ordered by key of their current record then newest run first */
+  private final PriorityQueue<Head<K, T>> queue;
+
+  /** Entry returned by next call, null when it has not been fetched yet */
+  private Map.Entry<K, T> fetched;
+
+  MergeIterator(List<RecordRun<K, T>> runs, Comparator<? super K> comparator, RecordFilter<K, T> filter)
+      throws IOException {
+    this.comparator = comparator;
+    this.filter = filter;
+    this.queue = new PriorityQueue<>(Math.max(runs.size(), 1), (a, b) -> {
+      int result = comparator.compare(a.run.getKey(), b.run.getKey());
+      return result != 0 ? result : Integer.compare(b.runNo, a.runNo);
+    });
+
+    try {
+      for (int i = 0; i < runs.size(); i++) {
+        advance(new Head<>(i, runs.get(i)));
+      }
+    } catch (IOException | RuntimeException e) {
+      for (RecordRun<K, T> run : runs) {
+        StorageUtil.closeQuietly(run);
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (fetched == null) {
+      try {
+        fetched = fetch();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return fetched != null;
+  }
+
+  @Override
+  public Map.Entry<K, T> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Map.Entry<K, T> entry = fetched;
+    fetched = null;
+    return entry;
+  }
+
+  /**
+   * Close runs which have not been read to the end
+   */
+  @Override
+  public void close() {
+    for (Head<K, T> head : queue) {
+      StorageUtil.closeQuietly(head.run);
+    }
+    queue.clear();
+  }
+
+  /**
+   * Find the next entry accepted by filter
+   *
+   * @return Map.Entry<K, T>, null when all runs have been read
+   * @throws IOException
+   */
+  private Map.Entry<K, T> fetch() throws IOException {
+    while (!queue.isEmpty()) {
+      Head<K, T> newest = queue.poll();
+      K key = newest.run.getKey();
+      T value = newest.run.getValue();
+      boolean accepted = value != null && filter.accept(newest.runNo, key, newest.run.getOrdinal());
+      advance(newest);
+
+      // Older records of the same key are skipped
+      while (!queue.isEmpty() && comparator.compare(queue.peek().run.getKey(), key) == 0) {
+        advance(queue.poll());
+      }
+      if (accepted) {
+        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Move run to its next record, run is closed when it has no record left
+   *
+   * @param head Head<K, T>
+   * @throws IOException
+   */
+  private void advance(Head<K, T> head) throws IOException {
+    if (head.run.next()) {
+      queue.add(head);
+    } else {
+      head.run.close();
+    }
+  }
+
+  /**
+   * Filter of the newest record of each key
+   *
+   * @param <K> type of key
+   * @param <T> type of value
+   */
+  interface RecordFilter<K, T> {
+
+    /**
+     * Check whether record is still live
+     *
+     * @param runNo int position of run in given runs
+     * @param key K
+     * @param ordinal int
+     * @return boolean
+     */
+    boolean accept(int runNo, K key, int ordinal);
+  }
+
+  /**
+   * Run with its position in given runs
+   *
+   * @param <K> type of key
+   * @param <T> type of value
+   */
+  private static class Head<K, T> {
+
+    private final int runNo;
+
+    private final RecordRun<K, T> run;
+
+    Head(int runNo, RecordRun<K, T> run) {
+      this.runNo = runNo;
+      this.run = run;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append only memory outside of java heap made of direct buffers.<br/>
+ * Space of replaced data is not reused, it is reclaimed when arena is cleared and buffers are released by garbage
+ * collector.
+ */
+class OffHeapArena {
+
+  /** Size in byte of each buffer, larger data gets a buffer of its own */
+  private final int chunkSize;
+
+  /** Buffers of arena, the last one receives new data */
+  private final List<ByteBuffer> chunks = new ArrayList<>();
+
+  /** Total capacity of buffers in byte */
+  private long allocatedBytes;
+
+  OffHeapArena(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Copy data into arena
+   *
+   * @param data byte[]
+   * @param offset int
+   * @param length int
+   * @return long address of data, chunk number in high 32 bits and offset inside chunk in low 32 bits
+   */
+  long put(byte[] data, int offset, int length) {
+    ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+
+    if (chunk == null || chunk.remaining() < length) {
+      chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+      chunks.add(chunk);
+      allocatedBytes += chunk.capacity();
+    }
+
+    int position = chunk.position();
+    chunk.put(data, offset, length);
+    return ((long) (chunks.size() - 1) << 32) | position;
+  }
+
+  /**
+   * Get buffer holding data of the specific address, data starts at {@link #getOffset(long)}
+   *
+   * @param address long
+   * @return ByteBuffer shared by other data, must not be modified
+   */
+  ByteBuffer getChunk(long address) {
+    return chunks.get((int) (address >>> 32));
+  }
+
+  /**
+   * Get offset of data inside its buffer
+   *
+   * @param address long
+   * @return int
+   */
+  static int getOffset(long address) {
+    return (int) address;
+  }
+
+  /**
+   * Copy data of the specific address into heap
+   *
+   * @param address long
+   * @param length int
+   * @return byte[]
+   */
+  byte[] get(long address, int length) {
+    byte[] data = new byte[length];
+    ByteBuffer source = getChunk(address).duplicate();
+    source.position(getOffset(address));
+    source.get(data);
+    return data;
+  }
+
+  /**
+   * Get total capacity of buffers in byte
+   *
+   * @return long
+   */
+  long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Drop all buffers, memory is released when they are collected
+   */
+  void clear() {
+    chunks.clear();
+    allocatedBytes = 0;
+  }
+}
@@ -0,0 +1,338 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import UtilitiesToolLib.module.TemporaryStorage.codec.Codec;
+
+/**
+ * Map keeping encoded values in an off-heap arena, values are decoded each time they are read.<br/>
+ * Keys stay in heap inside an open addressing index, iteration follows insertion order like a linked hash map. Map is
+ * not thread safe.
+ *
+ * @param <K> type of key
+ * @param <T> type of value
+ */
+class OffHeapMap<K, T> extends AbstractMap<K, T> {
+
+  /** Initial number of entries */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Codec used to encode and decode values */
+  private final Codec<T> valueCodec;
+
+  /** Size of arena buffers in byte */
+  private final int chunkSize;
+
+  /** Index of key and its entry number */
+  private final KeyIndex<K> index;
+
+  /** Keys of entries in insertion order, null for a removed entry */
+  private Object[] keys = new Object[INITIAL_CAPACITY];
+
+  /** Arena address of value of each entry */
+  private long[] addresses = new long[INITIAL_CAPACITY];
+
+  /** Length in byte of encoded value of each entry */
+  private int[] lengths = new int[INITIAL_CAPACITY];
+
+  /** Number of used entries including removed ones */
+  private int count;
+
+  /** Number of keys */
+  private int size;
+
+  /** Total length in byte of values which are still used */
+  private long liveBytes;
+
+  /** Memory holding encoded values */
+  private OffHeapArena arena;
+
+  OffHeapMap(Class<K> classKey, Codec<T> valueCodec, int chunkSize) {
+    this.valueCodec = valueCodec;
+    this.chunkSize = chunkSize;
+    this.index = KeyIndex.create(classKey);
+    this.arena = new OffHeapArena(chunkSize);
+  }
+
+  /**
+   * Associate encoded value with the specific key, entry keeps its position when key already exists
+   *
+   * @param key K
+   * @param data byte[]
+   * @param offset int
+   * @param length int
+   */
+  void putEncoded(K key, byte[] data, int offset, int length) {
+    int entryNo = (int) index.get(key);
+
+    if (entryNo >= 0) {
+      // Replaced value is not copied by compaction
+      keys[entryNo] = null;
+      liveBytes -= lengths[entryNo];
+    }
+
+    if (arena.getAllocatedBytes() > chunkSize && arena.getAllocatedBytes() > liveBytes * 2) {
+      // Most of arena is used by replaced values, compaction only sees entries holding a value
+      compactArena();
+    }
+
+    if (entryNo < 0) {
+      if (count == keys.length) {
+        grow();
+      }
+      entryNo = count++;
+      index.put(key, entryNo);
+      size++;
+    }
+
+    keys[entryNo] = key;
+    addresses[entryNo] = arena.put(data, offset, length);
+    lengths[entryNo] = length;
+    liveBytes += length;
+  }
+
+  /**
+   * Get copy of encoded value associated with the specific key
+   *
+   * @param key K
+   * @return byte[], null if key does not exist
+   */
+  byte[] getEncoded(K key) {
+    int entryNo = (int) index.get(key);
+    return entryNo >= 0 ? arena.get(addresses[entryNo], lengths[entryNo]) : null;
+  }
+
+  /**
+   * Get length of encoded value associated with the specific key
+   *
+   * @param key K
+   * @return int, -1 if key does not exist
+   */
+  int getEncodedLength(K key) {
+    int entryNo = (int) index.get(key);
+    return entryNo >= 0 ? lengths[entryNo] : -1;
+  }
+
+  /**
+   * Get total capacity in byte of off-heap memory held by map
+   *
+   * @return long
+   */
+  long getAllocatedBytes() {
+    return arena.getAllocatedBytes();
+  }
+
+  @Override
+  public T put(K key, T value) {
+    T previous = get(key);
+
+    try {
+      byte[] data = valueCodec.encode(value);
+      putEncoded(key, data, 0, data.length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return previous;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(Object key) {
+    int entryNo = (int) index.get((K) key);
+    return entryNo >= 0 ? decode(entryNo) : null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean containsKey(Object key) {
+    return index.get((K) key) != KeyIndex.NOT_FOUND;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T remove(Object key) {
+    int entryNo = (int) index.get((K) key);
+
+    if (entryNo < 0) {
+      return null;
+    }
+
+    T previous = decode(entryNo);
+    index.remove((K) key);
+    keys[entryNo] = null;
+    liveBytes -= lengths[entryNo];
+    size--;
+
+    if (size == 0) {
+      clear();
+    }
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+    Arrays.fill(keys, 0, count, null);
+    Arrays.fill(addresses, 0, count, 0L);
+    Arrays.fill(lengths, 0, count, 0);
+    count = 0;
+    size = 0;
+    liveBytes = 0;
+    arena.clear();
+  }
+
+  @Override
+  public Set<K> keySet() {
+    // Keys are read without decoding values
+    return new EntryView<K>(entryNo -> getKey(entryNo)) {
+
+      @Override
+      public boolean contains(Object key) {
+        return containsKey(key);
+      }
+    };
+  }
+
+  @Override
+  public Set<Entry<K, T>> entrySet() {
+    return new EntryView<>(entryNo -> new SimpleImmutableEntry<>(getKey(entryNo), decode(entryNo)));
+  }
+
+  /**
+   * Get key of the specific entry
+   *
+   * @param entryNo int
+   * @return K
+   */
+  @SuppressWarnings("unchecked")
+  private K getKey(int entryNo) {
+    return (K) keys[entryNo];
+  }
+
+  /**
+   * Decode value of the specific entry
+   *
+   * @param entryNo int
+   * @return T
+   */
+  private T decode(int entryNo) {
+    long address = addresses[entryNo];
+
+    try {
+      return valueCodec.decode(arena.getChunk(address), OffHeapArena.getOffset(address), lengths[entryNo]);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Make room for more entries, removed entries are dropped first when they take most of the room
+   */
+  private void grow() {
+    if (size < count / 2) {
+      int target = 0;
+
+      for (int i = 0; i < count; i++) {
+        if (keys[i] != null) {
+          keys[target] = keys[i];
+          addresses[target] = addresses[i];
+          lengths[target] = lengths[i];
+          index.put(getKey(target), target);
+          target++;
+        }
+      }
+      Arrays.fill(keys, target, count, null);
+      count = target;
+      return;
+    }
+
+    int capacity = keys.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    addresses = Arrays.copyOf(addresses, capacity);
+    lengths = Arrays.copyOf(lengths, capacity);
+  }
+
+  /**
+   * Copy values which are still used into a new arena, so space of replaced values is released
+   */
+  private void compactArena() {
+    OffHeapArena compacted = new OffHeapArena(chunkSize);
+
+    for (int i = 0; i < count; i++) {
+      if (keys[i] != null) {
+        addresses[i] = compacted.put(arena.get(addresses[i], lengths[i]), 0, lengths[i]);
+      }
+    }
+    arena = compacted;
+  }
+
+  /**
+   * Read only view over entries which have not been removed
+   *
+   * @param <E> type of element
+   */
+  private class EntryView<E> extends AbstractSet<E> {
+
+    /** Function building element of the specific entry */
+    private final IntFunction<E> element;
+
+    EntryView(IntFunction<E> element) {
+      this.element = element;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      return new Iterator<E>() {
+
+        /** Next entry to return */
+        private int next = skipRemoved(0);
+
+        @Override
+        public boolean hasNext() {
+          return next < count;
+        }
+
+        @Override
+        public E next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          E value = element.apply(next);
+          next = skipRemoved(next + 1);
+          return value;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Get the first entry from the specific one which has not been removed
+     *
+     * @param entryNo int
+     * @return int
+     */
+    private int skipRemoved(int entryNo) {
+      while (entryNo < count && keys[entryNo] == null) {
+        entryNo++;
+      }
+      return entryNo;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading a range of stored data sequentially by positional reads, so the underlying channel can be
+ * shared with other readers
+ */
+abstract class PositionalInputStream extends InputStream {
+
+  /** Length of range in byte */
+  private final long length;
+
+  /** Position of next read inside range */
+  private long position;
+
+  PositionalInputStream(long length) {
+    this.length = length;
+  }
+
+  /**
+   * Read bytes into buffer starting at the given position inside range
+   *
+   * @param buffer ByteBuffer
+   * @param position long
+   * @return int number of bytes read, -1 at end of range
+   * @throws IOException
+   */
+  protected abstract int read(ByteBuffer buffer, long position) throws IOException;
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    int count = read(ByteBuffer.wrap(b, off, len), position);
+    if (count > 0) {
+      position += count;
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = Math.max(0, Math.min(n, length - position));
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+  }
+}
@@ -0,0 +1,18 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Position of a single record inside a persisted partition file
+ */
+@Getter
+@AllArgsConstructor
+public class RecordPointer {
+
+  /** Offset of data from the beginning of the file in byte */
+  private final long offset;
+
+  /** Length of data in byte */
+  private final int length;
+}
@@ -0,0 +1,85 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sequence of records in key order read one by one, used by merge of sorted partitions
+ *
+ * @param <K> type of key
+ * @param <T> type of value
+ */
+interface RecordRun<K, T> extends Closeable {
+
+  /**
+   * Move to the next record
+   *
+   * @return boolean false when no record is left
+   * @throws IOException
+   */
+  boolean next() throws IOException;
+
+  /**
+   * Get key of current record
+   *
+   * @return K
+   */
+  K getKey();
+
+  /**
+   * Get value of current record
+   *
+   * @return T, null for a removal
+   */
+  T getValue();
+
+  /**
+   * Get ordinal of current record inside its partition
+   *
+   * @return int, -1 if record has not been written
+   */
+  int getOrdinal();
+
+  @Override
+  default void close() throws IOException {}
+
+  /**
+   * Create run over entries already sorted in memory
+   *
+   * @param entries List<Map.Entry<K, T>>
+   * @return RecordRun<K, T>
+   */
+  static <K, T> RecordRun<K, T> of(List<Map.Entry<K, T>> entries) {
+    Iterator<Map.Entry<K, T>> iterator = entries.iterator();
+
+    return new RecordRun<K, T>() {
+
+      /** Current entry */
+      private Map.Entry<K, T> current;
+
+      @Override
+      public boolean next() {
+        current = iterator.hasNext() ? iterator.next() : null;
+        return current != null;
+      }
+
+      @Override
+      public K getKey() {
+        return current.getKey();
+      }
+
+      @Override
+      public T getValue() {
+        return current.getValue();
+      }
+
+      @Override
+      public int getOrdinal() {
+        return -1;
+      }
+    };
+  }
+}
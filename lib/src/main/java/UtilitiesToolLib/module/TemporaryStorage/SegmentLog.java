@@ -0,0 +1,512 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log shared by all partitions of a storage.<br/>
+ * Each persisted partition is appended as one region into the current segment file, a new segment is started when the
+ * current one is full. Regions of closed partitions become garbage, a background compactor copies live regions out of
+ * mostly empty segments and removes their files.
+ */
+@Slf4j
+class SegmentLog implements Closeable {
+
+  private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
+
+  /** Buffer size used for copying regions */
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  /** The unique id of log, prefix of all segment files */
+  private final String uuid;
+
+  /** Directory of segment files */
+  private final File directory;
+
+  /** Size in byte after which a new segment is started */
+  private final long segmentSize;
+
+  /** Ratio of live data below which a full segment is compacted */
+  private final double compactionThreshold;
+
+  /** Open segments by number, changed while holding both monitor and write lock */
+  private final Map<Integer, Segment> segments;
+
+  /** Segments waiting for or under compaction */
+  private final Set<Integer> compactingSegments;
+
+  /** Readers locate regions under read lock, compactor moves regions and removes segments under write lock */
+  private final ReadWriteLock lock;
+
+  /** Segment receiving appended regions */
+  private Segment tail;
+
+  private int nextSegmentNo;
+
+  /** Executor compacting segments in background, created by first compaction */
+  private ExecutorService compactor;
+
+  private boolean closed;
+
+  /**
+   * Create segment log
+   *
+   * @param segmentSize long
+   * @param compactionThreshold double
+   */
+  SegmentLog(long segmentSize, double compactionThreshold) {
+    this(null, segmentSize, compactionThreshold);
+  }
+
+  /**
+   * Create segment log
+   *
+   * @param directory File directory of segment files, java.io.tmpdir if null
+   * @param segmentSize long
+   * @param compactionThreshold double
+   */
+  SegmentLog(File directory, long segmentSize, double compactionThreshold) {
+    this.uuid = UUID.randomUUID().toString();
+    this.directory = directory != null ? directory : new File(TEMP_DIR);
+    this.segmentSize = segmentSize;
+    this.compactionThreshold = compactionThreshold;
+    this.segments = new HashMap<>();
+    this.compactingSegments = new HashSet<>();
+    this.lock = new ReentrantReadWriteLock();
+  }
+
+  /**
+   * Append data written by the writer as a new region, partially written data is dropped on failure
+   *
+   * @param writer RegionWriter
+   * @return SegmentRegion
+   * @throws IOException
+   */
+  synchronized SegmentRegion append(RegionWriter writer) throws IOException {
+    ensureTail();
+
+    long start = tail.size;
+    SegmentOutputStream out = new SegmentOutputStream(tail.channel, start);
+
+    try {
+      writer.write(out);
+    } catch (IOException | RuntimeException e) {
+      tail.channel.truncate(start);
+      throw e;
+    }
+
+    SegmentRegion region = new SegmentRegion(tail.no, start, out.position - start);
+    tail.addRegion(region);
+    return region;
+  }
+
+  /**
+   * Read bytes of region into buffer
+   *
+   * @param region SegmentRegion
+   * @param buffer ByteBuffer
+   * @param position long position inside region
+   * @return int number of bytes read, -1 at end of region
+   * @throws IOException
+   */
+  int read(SegmentRegion region, ByteBuffer buffer, long position) throws IOException {
+    if (position >= region.getLength()) {
+      return buffer.hasRemaining() ? -1 : 0;
+    }
+
+    lock.readLock().lock();
+    try {
+      Segment segment = getSegment(region);
+      return StorageUtil.read(segment.channel, buffer, region.getOffset() + position,
+          region.getOffset() + region.getLength());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Read bytes of region until buffer is full
+   *
+   * @param region SegmentRegion
+   * @param buffer ByteBuffer
+   * @param position long position inside region
+   * @throws IOException
+   */
+  void readFully(SegmentRegion region, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int count = read(region, buffer, position);
+      if (count < 0) {
+        throw new EOFException("Unexpected end of segment region");
+      }
+      position += count;
+    }
+  }
+
+  /**
+   * Open region for sequential reading
+   *
+   * @param region SegmentRegion
+   * @return InputStream
+   */
+  InputStream openInputStream(SegmentRegion region) {
+    // Location of region is resolved by each read, so it can be moved meanwhile
+    return new PositionalInputStream(region.getLength()) {
+      @Override
+      protected int read(ByteBuffer buffer, long position) throws IOException {
+        return SegmentLog.this.read(region, buffer, position);
+      }
+    };
+  }
+
+  /**
+   * Map region into memory, the mapping stays valid after the region has been moved by compaction
+   *
+   * @param region SegmentRegion
+   * @return MappedByteBuffer
+   * @throws IOException
+   */
+  MappedByteBuffer map(SegmentRegion region) throws IOException {
+    if (region.getLength() > Integer.MAX_VALUE) {
+      throw new IOException("Segment region is too large to be memory mapped");
+    }
+
+    lock.readLock().lock();
+    try {
+      return getSegment(region).channel.map(FileChannel.MapMode.READ_ONLY, region.getOffset(), region.getLength());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Release region which is no longer used, its segment is compacted once mostly garbage
+   *
+   * @param region SegmentRegion
+   */
+  synchronized void release(SegmentRegion region) {
+    if (closed || region.isReleased()) {
+      return;
+    }
+    region.release();
+
+    Segment segment = segments.get(region.getSegmentNo());
+    segment.removeRegion(region);
+
+    if (segment != tail) {
+      scheduleCompaction(segment);
+    }
+  }
+
+  /**
+   * Get number of segment files
+   *
+   * @return int
+   */
+  synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Close all segments and remove their files
+   */
+  @Override
+  public void close() {
+    ExecutorService executor;
+
+    synchronized (this) {
+      closed = true;
+      executor = compactor;
+    }
+
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (this) {
+      for (Segment segment : new ArrayList<>(segments.values())) {
+        deleteSegment(segment);
+      }
+      tail = null;
+    }
+  }
+
+  /**
+   * Get segment currently holding the region, must be called while holding a lock
+   *
+   * @param region SegmentRegion
+   * @return Segment
+   * @throws IOException
+   */
+  private Segment getSegment(SegmentRegion region) throws IOException {
+    Segment segment = segments.get(region.getSegmentNo());
+
+    if (segment == null || region.isReleased()) {
+      throw new IOException("Segment region is no longer available");
+    }
+    return segment;
+  }
+
+  /**
+   * Start a new segment when there is none or the current one is full
+   *
+   * @throws IOException
+   */
+  private void ensureTail() throws IOException {
+    if (closed) {
+      throw new IOException("Segment log " + uuid + " has been closed");
+    }
+    if (tail != null && tail.size < segmentSize) {
+      return;
+    }
+
+    Segment previous = tail;
+    int no = nextSegmentNo++;
+    File file = new File(directory, uuid + "-" + no + ".tsl");
+    Segment segment = new Segment(no, file, FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE));
+
+    lock.writeLock().lock();
+    try {
+      segments.put(no, segment);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    tail = segment;
+    log.info("SegmentLog: segment {} has been created successfully", file.getName());
+
+    if (previous != null) {
+      // Garbage released while segment was still receiving data
+      scheduleCompaction(previous);
+    }
+  }
+
+  /**
+   * Remove empty segment or hand mostly empty segment over to background compactor
+   *
+   * @param segment Segment
+   */
+  private void scheduleCompaction(Segment segment) {
+    if (segment.liveBytes == 0) {
+      deleteSegment(segment);
+      return;
+    }
+    if (segment.liveBytes < segment.size * compactionThreshold && compactingSegments.add(segment.no)) {
+      if (compactor == null) {
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "temporary-storage-compaction");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+      compactor.execute(() -> compact(segment));
+    }
+  }
+
+  /**
+   * Copy live regions of segment to the tail then remove the segment
+   *
+   * @param segment Segment
+   */
+  private void compact(Segment segment) {
+    List<SegmentRegion> regions;
+
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      regions = new ArrayList<>(segment.regions);
+    }
+
+    try {
+      for (SegmentRegion region : regions) {
+        moveRegion(segment, region);
+      }
+      log.info("SegmentLog: segment {} has been compacted successfully", segment.file.getName());
+    } catch (IOException e) {
+      log.error("SegmentLog compact segment: an error has been occurred", e);
+    } finally {
+      synchronized (this) {
+        compactingSegments.remove(segment.no);
+        if (!closed && segment.liveBytes == 0 && segments.containsKey(segment.no)) {
+          deleteSegment(segment);
+        }
+      }
+    }
+  }
+
+  /**
+   * Copy region to the tail and point it to the new location
+   *
+   * @param segment Segment currently holding the region
+   * @param region SegmentRegion
+   * @throws IOException
+   */
+  private synchronized void moveRegion(Segment segment, SegmentRegion region) throws IOException {
+    if (closed || region.isReleased()) {
+      return;
+    }
+    ensureTail();
+
+    long start = tail.size;
+    ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+    long copied = 0;
+
+    try {
+      while (copied < region.getLength()) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), region.getLength() - copied));
+        int count = segment.channel.read(buffer, region.getOffset() + copied);
+        if (count < 0) {
+          throw new EOFException("Unexpected end of segment " + segment.file.getName());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          tail.channel.write(buffer, start + copied + buffer.position());
+        }
+        copied += count;
+      }
+    } catch (IOException e) {
+      tail.channel.truncate(start);
+      throw e;
+    }
+
+    lock.writeLock().lock();
+    try {
+      segment.removeRegion(region);
+      region.moveTo(tail.no, start);
+      tail.addRegion(region);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Close segment and remove its file
+   *
+   * @param segment Segment
+   */
+  private void deleteSegment(Segment segment) {
+    lock.writeLock().lock();
+    try {
+      segments.remove(segment.no);
+      StorageUtil.closeQuietly(segment.channel);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (segment == tail) {
+      tail = null;
+    }
+    if (segment.file.delete()) {
+      log.info("SegmentLog: segment {} has been removed successfully", segment.file.getName());
+    }
+  }
+
+  /**
+   * Writer of region data
+   */
+  interface RegionWriter {
+
+    /**
+     * Write data of region, stream does not have to be closed
+     *
+     * @param out OutputStream
+     * @throws IOException
+     */
+    void write(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Segment file
+   */
+  private static class Segment {
+
+    private final int no;
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    /** Regions stored in segment which are still used */
+    private final Set<SegmentRegion> regions = new HashSet<>();
+
+    /** Size of segment file */
+    private long size;
+
+    /** Total length of regions which are still used */
+    private long liveBytes;
+
+    private Segment(int no, File file, FileChannel channel) {
+      this.no = no;
+      this.file = file;
+      this.channel = channel;
+    }
+
+    private void addRegion(SegmentRegion region) {
+      regions.add(region);
+      size = Math.max(size, region.getOffset() + region.getLength());
+      liveBytes += region.getLength();
+    }
+
+    private void removeRegion(SegmentRegion region) {
+      if (regions.remove(region)) {
+        liveBytes -= region.getLength();
+      }
+    }
+  }
+
+  /**
+   * Output stream writing at the end of segment, closing it does not close the segment
+   */
+  private static class SegmentOutputStream extends OutputStream {
+
+    private final FileChannel channel;
+
+    private long position;
+
+    private SegmentOutputStream(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import lombok.Getter;
+
+/**
+ * Contiguous region of segment log holding the data of one partition.<br/>
+ * Segment and offset change when the region is moved by compaction, content and length never change.
+ */
+@Getter
+class SegmentRegion {
+
+  /** Number of segment holding the region */
+  private int segmentNo;
+
+  /** Offset of region inside its segment */
+  private long offset;
+
+  /** Length of region in byte */
+  private final long length;
+
+  /** Flag indicates whether region is no longer used by its partition */
+  private boolean released;
+
+  SegmentRegion(int segmentNo, long offset, long length) {
+    this.segmentNo = segmentNo;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Move region to another location after its content has been copied
+   *
+   * @param segmentNo int
+   * @param offset long
+   */
+  void moveTo(int segmentNo, long offset) {
+    this.segmentNo = segmentNo;
+    this.offset = offset;
+  }
+
+  /**
+   * Mark region as no longer used
+   */
+  void release() {
+    this.released = true;
+  }
+}
@@ -0,0 +1,16 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+/**
+ * Policy deciding when data in memory is written into disk
+ */
+public enum SpillPolicy {
+
+  /** Active partition is spilled when its encoded size reaches limit size */
+  SIZE,
+
+  /**
+   * Active partition is spilled and resident partitions are evicted when heap usage after garbage collection reaches
+   * the memory pressure threshold, limit size is only used as an upper bound of partition size if set
+   */
+  MEMORY_PRESSURE
+}
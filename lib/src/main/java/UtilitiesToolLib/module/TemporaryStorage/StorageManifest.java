@@ -0,0 +1,139 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Manifest file recording state of durable temporary storage.<br/>
+ * Manifest is replaced atomically, so a crash leaves either the previous or the new manifest. Content is followed by
+ * its CRC32, a damaged manifest is rejected.
+ */
+@UtilityClass
+class StorageManifest {
+
+  /** Name of manifest file inside storage directory */
+  static final String FILE_NAME = "manifest.tsm";
+
+  /** Name of manifest being written */
+  private static final String TEMP_FILE_NAME = "manifest.tsm.tmp";
+
+  /** Magic number at the start of manifest */
+  private static final int MAGIC = 0x54534D46;
+
+  /** Version of manifest format */
+  private static final int VERSION = 3;
+
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /**
+   * Write content into manifest of the specific directory, replacing the existing one
+   *
+   * @param directory File
+   * @param writer ContentWriter
+   * @throws IOException
+   */
+  void write(File directory, ContentWriter writer) throws IOException {
+    File tempFile = new File(directory, TEMP_FILE_NAME);
+    FileOutputStream fos = new FileOutputStream(tempFile);
+    CheckedOutputStream cos = new CheckedOutputStream(new BufferedOutputStream(fos, DEFAULT_BUFFER_SIZE), new CRC32());
+
+    try (DataOutputStream out = new DataOutputStream(cos)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writer.write(out);
+      out.writeLong(cos.getChecksum().getValue());
+      out.flush();
+      // Content must be on disk before it replaces the previous manifest
+      fos.getFD().sync();
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempFile.toPath());
+      throw e;
+    }
+    Files.move(tempFile.toPath(), new File(directory, FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Read content of manifest of the specific directory
+   *
+   * @param directory File
+   * @param reader ContentReader
+   * @return boolean false if directory has no manifest
+   * @throws IOException if manifest is damaged or can not be read
+   */
+  boolean read(File directory, ContentReader reader) throws IOException {
+    File file = new File(directory, FILE_NAME);
+
+    if (!file.isFile()) {
+      return false;
+    }
+
+    CheckedInputStream cis =
+        new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), DEFAULT_BUFFER_SIZE), new CRC32());
+
+    try (DataInputStream in = new DataInputStream(cis)) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported manifest " + file);
+      }
+      reader.read(in);
+      long checksum = cis.getChecksum().getValue();
+      if (in.readLong() != checksum) {
+        throw new IOException("Checksum of manifest " + file + " does not match");
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Remove manifest being written when the process stopped
+   *
+   * @param directory File
+   * @throws IOException
+   */
+  void deleteIncomplete(File directory) throws IOException {
+    Files.deleteIfExists(new File(directory, TEMP_FILE_NAME).toPath());
+  }
+
+  /**
+   * Writer of manifest content
+   */
+  @FunctionalInterface
+  interface ContentWriter {
+
+    /**
+     * Write content
+     *
+     * @param out DataOutputStream
+     * @throws IOException
+     */
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * Reader of manifest content
+   */
+  @FunctionalInterface
+  interface ContentReader {
+
+    /**
+     * Read content
+     *
+     * @param in DataInputStream
+     * @throws IOException
+     */
+    void read(DataInputStream in) throws IOException;
+  }
+}
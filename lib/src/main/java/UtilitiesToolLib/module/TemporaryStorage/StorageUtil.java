@@ -5,6 +5,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 
 import lombok.experimental.UtilityClass;
@@ -73,6 +74,46 @@ public class StorageUtil {
     return ByteBuffer.wrap(array).getInt();
   }
 
+  /**
+   * Get a buffer which can hold at least the specific length, the given buffer is returned if it is large enough
+   * 
+   * @param buffer byte[]
+   * @param length int
+   * @return byte[]
+   */
+  public static byte[] ensureCapacity(byte[] buffer, int length) {
+    return buffer.length >= length ? buffer : new byte[Math.max(length, buffer.length << 1)];
+  }
+
+  /**
+   * Read bytes from channel at the given position without reading past the limit position
+   * 
+   * @param channel FileChannel
+   * @param buffer ByteBuffer
+   * @param position long
+   * @param limit long
+   * @return int number of bytes read, -1 at the limit or end of channel
+   * @throws IOException
+   */
+  public static int read(FileChannel channel, ByteBuffer buffer, long position, long limit) throws IOException {
+    long remaining = limit - position;
+
+    if (remaining <= 0) {
+      return buffer.hasRemaining() ? -1 : 0;
+    }
+    if (buffer.remaining() <= remaining) {
+      return channel.read(buffer, position);
+    }
+
+    ByteBuffer slice = buffer.slice();
+    slice.limit((int) remaining);
+    int count = channel.read(slice, position);
+    if (count > 0) {
+      buffer.position(buffer.position() + count);
+    }
+    return count;
+  }
+
   /**
    * Closes a <code>Closeable</code> unconditionally.
    * <p>
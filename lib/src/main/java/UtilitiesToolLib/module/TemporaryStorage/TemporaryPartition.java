@@ -3,6 +3,8 @@ package UtilitiesToolLib.module.TemporaryStorage;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -10,19 +12,43 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.GZIPOutputStream;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
+import UtilitiesToolLib.common.util.DecryptingPositionalReader;
+import UtilitiesToolLib.common.util.GcmEncryptionEngine;
+import UtilitiesToolLib.module.TemporaryStorage.codec.Codec;
+import UtilitiesToolLib.module.TemporaryStorage.codec.Codecs;
+import UtilitiesToolLib.module.TemporaryStorage.compression.BlockCompressedFile;
+import UtilitiesToolLib.module.TemporaryStorage.compression.BlockCompressedInputStream;
+import UtilitiesToolLib.module.TemporaryStorage.compression.BlockCompressedOutputStream;
+import UtilitiesToolLib.module.TemporaryStorage.compression.BlockCompressor;
+import UtilitiesToolLib.module.TemporaryStorage.compression.CompressionType;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -43,7 +69,23 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
 
   private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
 
-  private ObjectMapper objectMapper = new ObjectMapper();
+  /** Extension of storage file */
+  static final String STORAGE_FILE_EXTENSION = ".tsp";
+
+  /** Encoded data marking a removed record, compared by identity */
+  private static final byte[] TOMBSTONE = new byte[0];
+
+  /** Length written into key table for a removed record */
+  private static final int TOMBSTONE_LENGTH = -1;
+
+  /** Encoded data marking a record whose data is kept by off-heap data map, compared by identity */
+  private static final byte[] OFF_HEAP = new byte[0];
+
+  /** Codec of key */
+  private Codec<K> keyCodec;
+
+  /** Codec of value */
+  private Codec<T> valueCodec;
 
   /** The unique id of partition */
   private String uuid;
@@ -51,15 +93,77 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
   /** Data map */
   protected Map<K, T> dataMap;
 
+  /**
+   * Encoded data of records which have not been written into disk yet, a partition is dirty while it is not empty.<br/>
+   * Kept by insertion order with boxed keys of any type, it only holds records of the active partition
+   */
+  protected Map<K, byte[]> encodedMap;
+
+  /** Data map keeping encoded data outside of java heap, null when data map keeps decoded values */
+  @Getter(AccessLevel.NONE)
+  private OffHeapMap<K, T> offHeapMap;
+
+  /** Flag indicates whether records which have not been written yet are in key order */
+  @Getter(AccessLevel.NONE)
+  private boolean recordsSorted;
+
+  /** Ordinal of each record inside the storage file, null when keys are indexed by the owner of partition */
+  protected Map<K, Integer> recordIndex;
+
+  /** Keys whose latest record in partition is a removal */
+  protected Set<K> removedKeys;
+
+  /**
+   * Offset of each record inside its section of the storage file by ordinal, available after data has been persisted
+   */
+  private long[] recordOffsets;
+
+  /** Length of each record inside the storage file by ordinal, available after data has been persisted */
+  private int[] recordLengths;
+
+  /** Sections of the storage file, one for each write, in order of writing */
+  @Getter(AccessLevel.NONE)
+  private List<Section> sections;
+
+  /** Bloom filter of keys in the storage file, available after data has been persisted if enabled */
+  private BloomFilter<byte[]> bloomFilter;
+
+  /** Channel used for reading single record from the storage file */
+  private FileChannel readChannel;
+
   /** Flag indicates whether data has been persisted into hard disk */
   private boolean persisted;
 
   /** Flag indicates whether data should be compress before writing into disk */
   private boolean compress;
 
+  /** Compression of the storage file */
+  private CompressionType compression;
+
+  /** Engine encrypting the storage file, null when file is not encrypted */
+  @Getter(AccessLevel.NONE)
+  private GcmEncryptionEngine encryption;
+
+  /** Log receiving data of partition instead of its own storage file, null when partition has its own file */
+  @Getter(AccessLevel.NONE)
+  private SegmentLog segmentLog;
+
+  /** Ordinals of records which have been replaced or removed by the owner of partition */
+  @Getter(AccessLevel.NONE)
+  private BitSet supersededOrdinals;
+
+  /** Number of records which have been replaced or removed by the owner of partition */
+  private int supersededCount;
+
+  /** Configuration of partition */
+  private TemporaryStorageConfig config;
+
   /** The total size of all data in byte */
   private long size;
 
+  /** Size in byte of encoded data kept on heap besides decoded values until the next write */
+  private long encodedSize;
+
   /**
    * Create temporary partition storage
    */
@@ -74,9 +178,7 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
    */
   public TemporaryPartition(boolean compress) {
     super();
-    this.uuid = UUID.randomUUID().toString();
-    this.dataMap = new LinkedHashMap<>();
-    this.compress = compress;
+    initialize(TemporaryStorageConfig.builder().compress(compress).build(), true);
   }
 
   /**
@@ -85,10 +187,63 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
    * @param compress if true data will be compressed before writing to disk
    */
   public TemporaryPartition(boolean compress, Class<K> classKey, Class<T> classValue) {
+    this(TemporaryStorageConfig.builder().compress(compress).build(), true, classKey, classValue);
+  }
+
+  /**
+   * Create temporary partition storage
+   * 
+   * @param config configuration of storage owning the partition
+   * @param retainKeys if false keys are not kept in memory after saving, records have to be read by ordinal
+   */
+  public TemporaryPartition(TemporaryStorageConfig config, boolean retainKeys, Class<K> classKey,
+      Class<T> classValue) {
+    this(config, retainKeys, null, classKey, classValue);
+  }
+
+  /**
+   * Create temporary partition storage
+   * 
+   * @param config configuration of storage owning the partition
+   * @param retainKeys if false keys are not kept in memory after saving, records have to be read by ordinal
+   * @param segmentLog log shared by partitions of the storage, null if partition has its own storage file
+   */
+  TemporaryPartition(TemporaryStorageConfig config, boolean retainKeys, SegmentLog segmentLog, Class<K> classKey,
+      Class<T> classValue) {
     super(classKey, classValue);
+    initialize(config, retainKeys);
+    this.segmentLog = segmentLog;
+  }
+
+  /**
+   * Initialize partition
+   * 
+   * @param config TemporaryStorageConfig
+   * @param retainKeys boolean
+   */
+  @SuppressWarnings("unchecked")
+  private void initialize(TemporaryStorageConfig config, boolean retainKeys) {
     this.uuid = UUID.randomUUID().toString();
-    this.dataMap = new LinkedHashMap<>();
-    this.compress = compress;
+    this.encodedMap = new LinkedHashMap<>();
+    this.recordIndex = retainKeys ? new LinkedHashMap<>() : null;
+    this.removedKeys = new HashSet<>();
+    this.supersededOrdinals = new BitSet();
+    this.sections = new ArrayList<>();
+    this.compression = config.getCompression() != null ? config.getCompression()
+        : (config.isCompress() ? CompressionType.GZIP : CompressionType.NONE);
+    this.compress = compression != CompressionType.NONE;
+    this.encryption = config.getEncryptionKeys() != null ? new GcmEncryptionEngine(config.getEncryptionKeys()) : null;
+    this.config = config;
+    this.keyCodec =
+        config.getKeyCodec() != null ? (Codec<K>) config.getKeyCodec() : Codecs.forClass(getClazzKey());
+    this.valueCodec =
+        config.getValueCodec() != null ? (Codec<T>) config.getValueCodec() : Codecs.forClass(getClazzValue());
+    if (config.isOffHeap()) {
+      this.offHeapMap = new OffHeapMap<>(getClazzKey(), valueCodec, config.getOffHeapChunkSize());
+      this.dataMap = offHeapMap;
+    } else {
+      this.dataMap = new LinkedHashMap<>();
+    }
   }
 
   /**
@@ -96,27 +251,48 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
    */
   @Override
   public void close() {
+    close(true);
+  }
+
+  /**
+   * Close all resources after used
+   * 
+   * @param deleteFile if false the storage file is kept, so partition can be restored from it later
+   */
+  void close(boolean deleteFile) {
+    StorageUtil.closeQuietly(readChannel);
+    readChannel = null;
+
+    for (Section section : sections) {
+      StorageUtil.closeQuietly(section.blockReader);
+      section.decryptor = null;
+      // Mapping is released by garbage collector
+      section.mappedBuffer = null;
+      if (section.region != null) {
+        // Space of region is reclaimed by compactor of segment log
+        segmentLog.release(section.region);
+      }
+    }
+    sections.clear();
+
     File storageFile = getStorageFile();
 
-    if (storageFile.exists() && storageFile.isFile()) {
+    if (deleteFile && storageFile.exists() && storageFile.isFile()) {
       if (storageFile.delete()) {
         log.info("TemporaryPartition: {} temporary file has been removed successfully", uuid);
       }
     }
 
     dataMap.clear();
+    encodedMap.clear();
+    removedKeys.clear();
+    clearRecordIndex();
+    supersededOrdinals.clear();
+    supersededCount = 0;
+    bloomFilter = null;
     persisted = false;
-  }
-
-  /***
-   * Get value by string
-   * 
-   * @param value
-   * @return
-   * @throws JsonProcessingException
-   */
-  private String getValueByString(Object value) throws JsonProcessingException {
-    return (value instanceof String) ? (String) value : objectMapper.writeValueAsString(value);
+    size = 0;
+    encodedSize = 0;
   }
 
   /**
@@ -127,9 +303,173 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
    * @throws Exception
    */
   public void add(final K key, final T value) throws Exception {
-    int dataLength = StorageUtil.getBytesCount(getValueByString(value));
-    this.size += dataLength;
+    if (value == null) {
+      // Null can not be told from a removed record, use remove instead
+      throw new IllegalArgumentException("Value can not be null");
+    }
+    byte[] dataArray = valueCodec.encode(value);
+    this.size += dataArray.length - getExistingLength(key);
+    this.recordsSorted = false;
+    if (recordIndex != null && !encodedMap.containsKey(key)) {
+      // Record gets the next ordinal, it is written by next save
+      recordIndex.put(key, getRecordCount());
+    }
+    removedKeys.remove(key);
+    if (offHeapMap != null) {
+      // Encoded data is the only copy of record, it is decoded on each read
+      offHeapMap.putEncoded(key, dataArray, 0, dataArray.length);
+      encodedSize -= getHeapLength(encodedMap.put(key, OFF_HEAP));
+      return;
+    }
     dataMap.put(key, value);
+    // Keep encoded data, so it is not encoded again when partition is written
+    encodedSize += dataArray.length - getHeapLength(encodedMap.put(key, dataArray));
+  }
+
+  /**
+   * Remove data associated with the specific key.<br/>
+   * A removal record is written by next save, so the key does not come back when partition is reloaded.
+   * 
+   * @param key K
+   */
+  public void remove(final K key) {
+    this.size -= getExistingLength(key);
+    this.recordsSorted = false;
+    if (recordIndex != null) {
+      recordIndex.remove(key);
+    }
+    dataMap.remove(key);
+    removedKeys.add(key);
+    // Removal keeps the position of record, ordinals of other records do not change
+    encodedSize -= getHeapLength(encodedMap.put(key, TOMBSTONE));
+  }
+
+  /**
+   * Get estimated heap size in byte of records in memory, encoded data kept for the next write is counted besides
+   * size of decoded values
+   * 
+   * @return long
+   */
+  public long getMemorySize() {
+    return size + encodedSize;
+  }
+
+  /**
+   * Get length of encoded data held on heap by the given entry of encoded map
+   * 
+   * @param dataArray byte[], null if key had no entry
+   * @return int
+   */
+  private static int getHeapLength(byte[] dataArray) {
+    // Tombstone and off-heap markers are shared empty arrays
+    return dataArray != null ? dataArray.length : 0;
+  }
+
+  /**
+   * Get length of encoded data currently associated with the specific key, used for byte accounting
+   * 
+   * @param key K
+   * @return int
+   */
+  private int getExistingLength(final K key) {
+    byte[] dataArray = encodedMap.get(key);
+
+    if (dataArray != null) {
+      return Math.max(getEncodedLength(key, dataArray), 0);
+    }
+
+    Integer ordinal = recordIndex != null ? recordIndex.get(key) : null;
+
+    if (ordinal != null && ordinal < getPersistedRecordCount()) {
+      return Math.max(recordLengths[ordinal], 0);
+    }
+    return 0;
+  }
+
+  /**
+   * Get length of encoded data of a record which has not been written yet
+   * 
+   * @param key K
+   * @param dataArray byte[] value of encoded map
+   * @return int, {@link #TOMBSTONE_LENGTH} for a removal
+   */
+  private int getEncodedLength(final K key, final byte[] dataArray) {
+    if (dataArray == TOMBSTONE) {
+      return TOMBSTONE_LENGTH;
+    }
+    return dataArray == OFF_HEAP ? offHeapMap.getEncodedLength(key) : dataArray.length;
+  }
+
+  /**
+   * Sort records which have not been written yet by key, so they are written in key order.<br/>
+   * Ordinals of these records change, owner of partition indexing keys has to move them to their new position in
+   * encoded map.
+   */
+  @SuppressWarnings("unchecked")
+  public void sortRecords() {
+    if (recordsSorted) {
+      return;
+    }
+
+    int total = encodedMap.size();
+    int firstOrdinal = getPersistedRecordCount();
+    Object[] keys = encodedMap.keySet().toArray();
+    byte[][] dataArrays = encodedMap.values().toArray(new byte[total][]);
+    Integer[] order = new Integer[total];
+    Comparator<? super K> comparator = getKeyComparator();
+
+    for (int i = 0; i < total; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> comparator.compare((K) keys[a], (K) keys[b]));
+
+    // Replaced and removed flags follow their records
+    BitSet superseded = supersededOrdinals.get(firstOrdinal, firstOrdinal + total);
+    supersededOrdinals.clear(firstOrdinal, firstOrdinal + total);
+    encodedMap.clear();
+
+    for (int i = 0; i < total; i++) {
+      int position = order[i];
+      K key = (K) keys[position];
+
+      encodedMap.put(key, dataArrays[position]);
+      supersededOrdinals.set(firstOrdinal + i, superseded.get(position));
+      if (recordIndex != null && dataArrays[position] != TOMBSTONE) {
+        recordIndex.put(key, firstOrdinal + i);
+      }
+    }
+    this.recordsSorted = true;
+  }
+
+  /**
+   * Get comparator of keys used by sorted mode
+   * 
+   * @return Comparator<? super K> comparator of configuration, natural order of keys if not configured
+   */
+  @SuppressWarnings("unchecked")
+  public Comparator<? super K> getKeyComparator() {
+    return config.getKeyComparator() != null ? (Comparator<? super K>) config.getKeyComparator()
+        : (Comparator<? super K>) Comparator.naturalOrder();
+  }
+
+  /**
+   * Check whether the latest record of the specific key in partition is a removal
+   * 
+   * @param key K
+   * @return boolean
+   */
+  public boolean isRemoved(final K key) {
+    return removedKeys.contains(key);
+  }
+
+  /**
+   * Check whether persisted record at the specific ordinal is a removal
+   * 
+   * @param ordinal int
+   * @return boolean
+   */
+  public boolean isTombstone(final int ordinal) {
+    return ordinal >= 0 && ordinal < getPersistedRecordCount() && recordLengths[ordinal] == TOMBSTONE_LENGTH;
   }
 
   /**
@@ -149,153 +489,1148 @@ public class TemporaryPartition<K, T> extends AbstractTemporaryStorage<K, T> imp
    * @return boolean
    */
   public boolean containsKey(final K key) {
-    return dataMap.containsKey(key);
+    return dataMap.containsKey(key) || (recordIndex != null && recordIndex.containsKey(key));
   }
 
   /**
-   * Returns a Set view of the keys contained in this partition.
+   * Check whether value associated with specific key might exist without reading disk.<br/>
+   * False means the key definitely does not exist, true has to be confirmed by {@link #findOrdinal(Object)}.
    * 
-   * @return Set<K>
+   * @param key K
+   * @return boolean
+   * @throws IOException
    */
-  public Set<K> keySet() {
-    return dataMap.keySet();
+  public boolean mightContain(final K key) throws IOException {
+    if (containsKey(key)) {
+      return true;
+    }
+    return isPersisted() && (bloomFilter == null || bloomFilter.mightContain(keyCodec.encode(key)));
   }
 
   /**
-   * Save data into disk and clean up memory using by data
+   * Find ordinal of record associated with the specific key by reading key table in the storage file.<br/>
+   * Ordinal of a removal is returned as well, see {@link #isTombstone(int)}.
    * 
+   * @param key K
+   * @return int, -1 if key does not exist
    * @throws IOException
    */
-  public void save() throws IOException {
-    Set<Entry<K, T>> entrySet = dataMap.entrySet();
-
+  public int findOrdinal(final K key) throws IOException {
+    if (recordIndex != null) {
+      Integer ordinal = recordIndex.get(key);
+      return ordinal != null ? ordinal : -1;
+    }
     if (!isPersisted()) {
-      this.persisted = true;
+      return -1;
+    }
 
-      File storageFile = getStorageFile();
+    byte[] keyArray = keyCodec.encode(key);
+    byte[] buffer = new byte[Math.max(keyArray.length, DATA_ALIGNMENT_SIZE)];
 
-      FileOutputStream fos = null;
-      OutputStream bos = null;
+    // Newer sections hold the latest record of key
+    for (int no = sections.size() - 1; no >= 0; no--) {
+      Section section = sections.get(no);
 
-      try {
-        fos = new FileOutputStream(storageFile, false);
-        bos = compress ? new GZIPOutputStream(fos, DEFAULT_BUFFER_SIZE) : new BufferedOutputStream(fos);
-        // Write header
-        // 4 bytes: total key set
-        // headers:
-        // - 4 bytes: length of key
-        // - 4 bytes: length of data
-        // - 4 bytes: key value
-        // Using 4 byte for total key in set
-        bos.write(StorageUtil.convertIntToByteArray(entrySet.size()));
-
-        for (Entry<K, T> entry : entrySet) {
-          final K key = entry.getKey();
-          int keyLength = StorageUtil.getBytesCount(getValueByString(key));
-          int dataLength = StorageUtil.getBytesCount(getValueByString(dataMap.get(key)));
-          bos.write(StorageUtil.convertIntToByteArray(keyLength));
-          bos.write(StorageUtil.convertIntToByteArray(dataLength));
-          bos.write(getValueByString(key).getBytes(StorageUtil.UTF8));
+      try (DataInputStream dis = openInputStream(section)) {
+        int total = dis.readInt();
+
+        for (int i = 0; i < total; i++) {
+          int keyLength = dis.readInt();
+          // Skip length of data, it is already kept by record lengths
+          dis.readInt();
+          buffer = StorageUtil.ensureCapacity(buffer, keyLength);
+          dis.readFully(buffer, 0, keyLength);
+
+          if (Arrays.equals(keyArray, 0, keyArray.length, buffer, 0, keyLength)) {
+            return section.firstOrdinal + i;
+          }
         }
+      }
+    }
+    return -1;
+  }
 
-        bos.flush();
+  /**
+   * Get number of records in partition, which is also the ordinal of next added record
+   * 
+   * @return int
+   */
+  public int getRecordCount() {
+    return getPersistedRecordCount() + encodedMap.size();
+  }
+
+  /**
+   * Get number of records which have been written into disk
+   * 
+   * @return int
+   */
+  int getPersistedRecordCount() {
+    return recordLengths != null ? recordLengths.length : 0;
+  }
 
-        // Write data:
-        // - n bytes: data byte array
-        for (Entry<K, T> entry : entrySet) {
-          byte[] dataArray = getValueByString(entry.getValue()).getBytes(StorageUtil.UTF8);
+  /**
+   * Check whether partition has records which have not been written into disk yet
+   * 
+   * @return boolean
+   */
+  public boolean isDirty() {
+    return !encodedMap.isEmpty();
+  }
 
-          bos.write(dataArray);
-        }
+  /**
+   * Mark record at the specific ordinal as replaced by a record of a newer partition or removed
+   * 
+   * @param ordinal int
+   * @return boolean true if all records of partition have been replaced
+   */
+  public boolean markSuperseded(final int ordinal) {
+    if (!supersededOrdinals.get(ordinal)) {
+      supersededOrdinals.set(ordinal);
+      supersededCount++;
+    }
+    return supersededCount >= getRecordCount();
+  }
 
-        bos.flush();
-        log.info("TemporaryPartition: {} temporary file has been created successfully", uuid);
-      } finally {
-        StorageUtil.closeQuietly(bos);
-        StorageUtil.closeQuietly(fos);
-      }
+  /**
+   * Mark record at the specific ordinal as live again after its key has been added back into the same position
+   * 
+   * @param ordinal int
+   */
+  public void reviveSuperseded(final int ordinal) {
+    if (supersededOrdinals.get(ordinal)) {
+      supersededOrdinals.clear(ordinal);
+      supersededCount--;
     }
-    // Clean up memory using by data
-    for (Entry<K, T> entry : entrySet) {
-      if (entry.getValue() != null) {
+  }
 
-        entry.setValue(null);
-      }
+  /**
+   * Get total size in byte of records which have not been replaced or removed
+   * 
+   * @return long
+   */
+  public long getLiveSize() {
+    long liveSize = size;
+    int persistedCount = getPersistedRecordCount();
+
+    for (int ordinal = supersededOrdinals.nextSetBit(0); ordinal >= 0 && ordinal < persistedCount;
+        ordinal = supersededOrdinals.nextSetBit(ordinal + 1)) {
+      liveSize -= Math.max(recordLengths[ordinal], 0);
     }
+    return liveSize;
   }
 
   /**
-   * Load data from disk into memory
+   * Returns a Set view of the keys contained in this partition.
    * 
-   * @throws FileNotFoundException
+   * @return Set<K>
+   */
+  public Set<K> keySet() {
+    return (isPersisted() && recordIndex != null) ? recordIndex.keySet() : dataMap.keySet();
+  }
+
+  /**
+   * Read data associated with the specific key directly from disk without loading the whole partition.<br/>
+   * Uncompressed file is read by a positional read, compressed file has to be decompressed up to the record.
+   * 
+   * @param key K
+   * @return T
    * @throws IOException
-   * @throws DataFormatException
    */
-  @SuppressWarnings("unchecked")
-  public void load() throws FileNotFoundException, IOException {
-    if (isPersisted()) {
-      File storageFile = getStorageFile();
+  public T read(final K key) throws IOException {
+    T value = dataMap.get(key);
 
-      FileInputStream fis = null;
-      InputStream bis = null;
+    if (value != null || !isPersisted()) {
+      return value;
+    }
 
-      try {
-        fis = new FileInputStream(storageFile);
-        bis = compress ? new GZIPInputStream(fis, DEFAULT_BUFFER_SIZE) : new BufferedInputStream(fis);
-        // Read total key set
-        byte[] totalCountArray = bis.readNBytes(DATA_ALIGNMENT_SIZE);
-        int total = StorageUtil.convertByteArrayToInt(totalCountArray);
-        Map<K, Integer> dataLengthMap = new LinkedHashMap<>();
-
-        // Read all key value along side data length in byte
-        for (int i = 0; i < total; i++) {
-          byte[] headerArray = bis.readNBytes(DATA_ALIGNMENT_SIZE);
-          int keyLength = StorageUtil.convertByteArrayToInt(headerArray);
-
-          headerArray = bis.readNBytes(DATA_ALIGNMENT_SIZE);
-          int dataLength = StorageUtil.convertByteArrayToInt(headerArray);
-
-          headerArray = bis.readNBytes(keyLength);
-          String strKey = StorageUtil.convertByteArrayToString(headerArray);
-          if (getClazzKey().equals(String.class)) {
-            dataLengthMap.put((K) strKey, dataLength);
-          } else {
-            dataLengthMap.put(objectMapper.readValue(strKey, getClazzKey()), dataLength);
-          }
-        }
+    Integer ordinal = recordIndex != null ? recordIndex.get(key) : null;
+
+    return ordinal != null ? read(ordinal) : null;
+  }
+
+  /**
+   * Read data at the specific ordinal directly from disk without loading the whole partition
+   * 
+   * @param ordinal int
+   * @return T
+   * @throws IOException
+   */
+  public T read(final int ordinal) throws IOException {
+    RecordPointer pointer = getRecordPointer(ordinal);
 
-        // Clear the existing map
-        dataMap.clear();
+    if (pointer == null) {
+      return null;
+    }
 
-        for (Entry<K, Integer> entry : dataLengthMap.entrySet()) {
-          final K key = entry.getKey();
-          // Get real data in byte
-          int dataLength = dataLengthMap.get(key);
-          // If compressed size is zero, it means data was not compressed at all, using data length instead
-          byte[] dataArray = bis.readNBytes(dataLength);
+    Section section = getSection(ordinal);
 
-          if (dataArray.length == dataLength) {
-            if (getClazzValue().equals(String.class)) {
-              dataMap.put(key, (T) StorageUtil.convertByteArrayToString(dataArray));
-            } else {
-              dataMap.put(key,
-                  objectMapper.readValue(StorageUtil.convertByteArrayToString(dataArray), getClazzValue()));
-            }
-          }
-        }
-      } finally {
-        StorageUtil.closeQuietly(bis);
-        StorageUtil.closeQuietly(fis);
+    if (isMemoryMapped()) {
+      // Decode straight from page cache without copying data onto heap
+      return valueCodec.decode(getMappedBuffer(section), (int) pointer.getOffset(), pointer.getLength());
+    }
+
+    byte[] dataArray;
+
+    if (compression == CompressionType.GZIP) {
+      dataArray = readCompressedRecord(section, pointer);
+    } else if (compression.isBlockCompressed()) {
+      // Only blocks containing the record are decompressed
+      dataArray = getBlockReader(section).read(pointer.getOffset(), pointer.getLength());
+    } else {
+      dataArray = readRecord(section, pointer);
+    }
+
+    return valueCodec.decode(dataArray, 0, dataArray.length);
+  }
+
+  /**
+   * Check whether records of persisted partition are read from memory mapped storage file
+   * 
+   * @return boolean
+   */
+  public boolean isMemoryMapped() {
+    return config.isMemoryMapped() && !compress && encryption == null && isPersisted();
+  }
+
+  /**
+   * Get read-only memory mapping of section of the storage file
+   * 
+   * @param section Section
+   * @return MappedByteBuffer
+   * @throws IOException
+   */
+  private MappedByteBuffer getMappedBuffer(Section section) throws IOException {
+    if (section.mappedBuffer == null && section.region != null) {
+      section.mappedBuffer = segmentLog.map(section.region);
+    } else if (section.mappedBuffer == null) {
+      if (section.length > Integer.MAX_VALUE) {
+        throw new IOException("Temporary file " + uuid + " is too large to be memory mapped");
+      }
+      try (FileChannel channel = FileChannel.open(getStorageFile().toPath(), StandardOpenOption.READ)) {
+        section.mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, section.position, section.length);
       }
     }
+    return section.mappedBuffer;
   }
 
   /**
-   * Get temporary file path on disk
+   * Get position of record at the specific ordinal inside its section of the storage file
    * 
-   * @return File
+   * @param ordinal int
+   * @return RecordPointer, null if data has not been persisted or record is a removal
    */
-  public File getStorageFile() {
-    return Path.of(TEMP_DIR, uuid + ".tsp").toFile();
+  public RecordPointer getRecordPointer(final int ordinal) {
+    if (!isPersisted() || recordOffsets == null || ordinal < 0 || ordinal >= recordOffsets.length
+        || recordLengths[ordinal] == TOMBSTONE_LENGTH) {
+      return null;
+    }
+    return new RecordPointer(recordOffsets[ordinal], recordLengths[ordinal]);
+  }
+
+  /**
+   * Get section of the storage file holding the record at the specific ordinal
+   * 
+   * @param ordinal int
+   * @return Section
+   */
+  private Section getSection(final int ordinal) {
+    int no = sections.size() - 1;
+
+    while (no > 0 && sections.get(no).firstOrdinal > ordinal) {
+      no--;
+    }
+    return sections.get(no);
+  }
+
+  /**
+   * Clear position of all records
+   */
+  private void clearRecordIndex() {
+    if (recordIndex != null) {
+      recordIndex.clear();
+    }
+    recordOffsets = null;
+    recordLengths = null;
+  }
+
+  /**
+   * Read record from uncompressed storage file by positional read
+   * 
+   * @param section Section
+   * @param pointer RecordPointer
+   * @return byte[]
+   * @throws IOException
+   */
+  private byte[] readRecord(Section section, RecordPointer pointer) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(pointer.getLength());
+    long position = pointer.getOffset();
+
+    while (buffer.hasRemaining()) {
+      int count = readPlainSection(section, buffer, position);
+      if (count < 0) {
+        throw new IOException("Unexpected end of temporary file " + uuid);
+      }
+      position += count;
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Read stored bytes of section at the given position inside section
+   * 
+   * @param section Section
+   * @param buffer ByteBuffer
+   * @param position long
+   * @return int number of bytes read, -1 at end of section
+   * @throws IOException
+   */
+  private int readSection(Section section, ByteBuffer buffer, long position) throws IOException {
+    if (section.region != null) {
+      return segmentLog.read(section.region, buffer, position);
+    }
+    if (readChannel == null) {
+      readChannel = FileChannel.open(getStorageFile().toPath(), StandardOpenOption.READ);
+    }
+    return StorageUtil.read(readChannel, buffer, section.position + position, section.position + section.length);
+  }
+
+  /**
+   * Read bytes of section at the given position of data written before encryption, only the encryption chunks
+   * containing the bytes are decrypted
+   * 
+   * @param section Section
+   * @param buffer ByteBuffer
+   * @param position long
+   * @return int number of bytes read, -1 at end of section
+   * @throws IOException
+   */
+  private int readPlainSection(final Section section, ByteBuffer buffer, long position) throws IOException {
+    if (encryption == null) {
+      return readSection(section, buffer, position);
+    }
+    if (section.decryptor == null) {
+      section.decryptor = encryption.positionalReader((dst, pos) -> readSection(section, dst, pos));
+    }
+    return section.decryptor.read(buffer, position);
+  }
+
+  /**
+   * Get reader of single block of section of the storage file
+   * 
+   * @param section Section
+   * @return BlockCompressedFile
+   * @throws IOException
+   */
+  private BlockCompressedFile getBlockReader(final Section section) throws IOException {
+    if (section.blockReader == null) {
+      section.blockReader = new BlockCompressedFile((buffer, position) -> readPlainSection(section, buffer, position),
+          section.blockOffsets, section.blockSize, createBlockCompressor());
+    }
+    return section.blockReader;
+  }
+
+  /**
+   * Create compressor of block compression
+   * 
+   * @return BlockCompressor
+   */
+  private BlockCompressor createBlockCompressor() {
+    return compression.createBlockCompressor(config.getCompressionLevel());
+  }
+
+  /**
+   * Read record from GZIP compressed storage file by decompressing data up to the record
+   * 
+   * @param section Section
+   * @param pointer RecordPointer
+   * @return byte[]
+   * @throws IOException
+   */
+  private byte[] readCompressedRecord(Section section, RecordPointer pointer) throws IOException {
+    try (InputStream bis = openInputStream(section)) {
+      long remaining = pointer.getOffset();
+
+      while (remaining > 0) {
+        long skipped = bis.skip(remaining);
+        if (skipped <= 0) {
+          throw new IOException("Unexpected end of temporary file " + uuid);
+        }
+        remaining -= skipped;
+      }
+      return bis.readNBytes(pointer.getLength());
+    }
+  }
+
+  /**
+   * Save data into disk and clean up memory using by data
+   * 
+   * @throws IOException
+   */
+  public void save() throws IOException {
+    write();
+    unload();
+  }
+
+  /**
+   * Write data into disk, data stays in memory.<br/>
+   * Clean partition is not written again, records added since last write are appended as a new section instead of
+   * rewriting the whole file.
+   * 
+   * @throws IOException
+   */
+  public void write() throws IOException {
+    PendingWrite pending = prepareWrite();
+
+    if (pending != null) {
+      writePending(pending);
+      completeWrite(pending);
+    }
+  }
+
+  /**
+   * Take records which have not been written yet, so they can be written by another thread.<br/>
+   * Writing only changes the storage file and the pending write, state of partition is changed by
+   * {@link #completeWrite(PendingWrite)} on the thread owning partition, which can keep reading it meanwhile.
+   * 
+   * @return PendingWrite, null if there is nothing to write
+   */
+  PendingWrite prepareWrite() {
+    if (isPersisted() && !isDirty()) {
+      return null;
+    }
+    if (config.isSorted()) {
+      sortRecords();
+    }
+
+    List<Entry<K, byte[]>> records = new ArrayList<>(encodedMap.size());
+    for (Entry<K, byte[]> entry : encodedMap.entrySet()) {
+      records.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+    }
+    Section section = new Section(getPersistedRecordCount(), isPersisted() ? getStorageFile().length() : 0);
+    section.keyId = encryption != null ? encryption.getKeyProvider().getCurrentKeyId() : null;
+    return new PendingWrite(records, section);
+  }
+
+  /**
+   * Write records of pending write as a new section of the storage file
+   * 
+   * @param pending PendingWrite
+   * @throws IOException
+   */
+  void writePending(PendingWrite pending) throws IOException {
+    final Section section = pending.section;
+    List<Entry<K, byte[]>> records = pending.records;
+    long[] offsets = pending.offsets;
+    int[] lengths = pending.lengths;
+    byte[][] keyArrays = pending.keyArrays;
+
+    if (segmentLog != null) {
+      // Data is appended into segment log shared by partitions of the storage
+      section.region = segmentLog.append(out -> writeSection(out, section, records, keyArrays, offsets, lengths));
+      section.length = section.region.getLength();
+    } else {
+      try {
+        CheckedOutputStream fos = new CheckedOutputStream(new FileOutputStream(getStorageFile(), isPersisted()),
+            new CRC32());
+        writeSection(fos, section, records, keyArrays, offsets, lengths);
+        section.checksum = fos.getChecksum().getValue();
+      } catch (IOException | RuntimeException e) {
+        // Drop partially appended section, so a failed write is retried by next save
+        if (getStorageFile().exists()) {
+          try (FileChannel channel = FileChannel.open(getStorageFile().toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(section.position);
+          }
+        }
+        throw e;
+      }
+      section.length = getStorageFile().length() - section.position;
+    }
+  }
+
+  /**
+   * Record positions of records written by pending write, records added again meanwhile stay dirty
+   * 
+   * @param pending PendingWrite which has been written
+   */
+  void completeWrite(PendingWrite pending) {
+    final Section section = pending.section;
+    List<Entry<K, byte[]>> records = pending.records;
+    long[] offsets = pending.offsets;
+    int[] lengths = pending.lengths;
+    byte[][] keyArrays = pending.keyArrays;
+
+    // Record positions and keys are only updated when the whole section has been written
+    int firstOrdinal = section.firstOrdinal;
+    recordOffsets = recordOffsets != null ? Arrays.copyOf(recordOffsets, firstOrdinal + offsets.length) : offsets;
+    recordLengths = recordLengths != null ? Arrays.copyOf(recordLengths, firstOrdinal + lengths.length) : lengths;
+    System.arraycopy(offsets, 0, recordOffsets, firstOrdinal, offsets.length);
+    System.arraycopy(lengths, 0, recordLengths, firstOrdinal, lengths.length);
+
+    if (bloomFilter == null && config.isBloomFilter()) {
+      bloomFilter =
+          BloomFilter.create(Funnels.byteArrayFunnel(), Math.max(records.size(), 1), config.getBloomFilterFpp());
+    }
+    for (int i = 0; i < records.size(); i++) {
+      Entry<K, byte[]> record = records.get(i);
+      if (recordIndex != null && record.getValue() != TOMBSTONE) {
+        recordIndex.put(record.getKey(), firstOrdinal + i);
+      }
+      if (bloomFilter != null) {
+        bloomFilter.put(keyArrays[i]);
+      }
+      // Record added again meanwhile stays dirty
+      if (encodedMap.remove(record.getKey(), record.getValue())) {
+        encodedSize -= record.getValue().length;
+      }
+    }
+
+    sections.add(section);
+    this.persisted = true;
+    log.info("TemporaryPartition: {} {} records have been persisted successfully", uuid, records.size());
+  }
+
+  /**
+   * Write key table and data of records as one section
+   * 
+   * @param fos OutputStream
+   * @param section Section
+   * @param records List<Entry<K, byte[]>> key and encoded data of records
+   * @param keyArrays byte[][] receiving encoded keys
+   * @param offsets long[] receiving offset of each record inside section
+   * @param lengths int[] receiving length of each record
+   * @throws IOException
+   */
+  private void writeSection(OutputStream fos, Section section, List<Entry<K, byte[]>> records, byte[][] keyArrays,
+      long[] offsets, int[] lengths) throws IOException {
+    OutputStream bos = null;
+
+    try {
+      bos = openOutputStream(fos, section);
+      // Write header
+      // 4 bytes: total key set
+      // headers:
+      // - 4 bytes: length of key
+      // - 4 bytes: length of data, -1 for a removal
+      // - 4 bytes: key value
+      // Using 4 byte for total key in set
+      bos.write(StorageUtil.convertIntToByteArray(records.size()));
+
+      // Data section starts right after the header
+      long offset = DATA_ALIGNMENT_SIZE;
+
+      // Each key and value is encoded exactly once, values have been encoded when they were added
+      for (int i = 0; i < records.size(); i++) {
+        Entry<K, byte[]> record = records.get(i);
+        byte[] keyArray = keyCodec.encode(record.getKey());
+        int dataLength = getEncodedLength(record.getKey(), record.getValue());
+        bos.write(StorageUtil.convertIntToByteArray(keyArray.length));
+        bos.write(StorageUtil.convertIntToByteArray(dataLength));
+        bos.write(keyArray);
+        offset += DATA_ALIGNMENT_SIZE * 2 + keyArray.length;
+        keyArrays[i] = keyArray;
+        lengths[i] = dataLength;
+      }
+
+      // Build record offsets for reading single record later, a removal has no data
+      for (int i = 0; i < lengths.length; i++) {
+        offsets[i] = offset;
+        offset += Math.max(lengths[i], 0);
+      }
+
+      bos.flush();
+
+      // Write data:
+      // - n bytes: data byte array
+      for (Entry<K, byte[]> record : records) {
+        bos.write(record.getValue() == OFF_HEAP ? offHeapMap.getEncoded(record.getKey()) : record.getValue());
+      }
+
+      // Closing stream finishes compression, errors must not be ignored here
+      bos.close();
+      if (bos instanceof BlockCompressedOutputStream) {
+        section.blockOffsets = ((BlockCompressedOutputStream) bos).getBlockOffsets();
+        section.blockSize = ((BlockCompressedOutputStream) bos).getBlockSize();
+      }
+    } finally {
+      StorageUtil.closeQuietly(bos);
+      StorageUtil.closeQuietly(fos);
+    }
+  }
+
+  /**
+   * Open storage file for sequential writing
+   * 
+   * @param fos OutputStream
+   * @param section Section being written
+   * @return OutputStream
+   * @throws IOException
+   */
+  private OutputStream openOutputStream(OutputStream fos, Section section) throws IOException {
+    if (section.keyId != null) {
+      // Data is compressed before it is encrypted
+      fos = encryption.encryptingStream(new BufferedOutputStream(fos, DEFAULT_BUFFER_SIZE), section.keyId);
+    }
+
+    switch (compression) {
+      case GZIP:
+        return new GZIPOutputStream(fos, DEFAULT_BUFFER_SIZE);
+      case DEFLATE:
+      case LZ:
+        return new BlockCompressedOutputStream(new BufferedOutputStream(fos, DEFAULT_BUFFER_SIZE),
+            createBlockCompressor(), config.getCompressionBlockSize());
+      default:
+        return new BufferedOutputStream(fos, DEFAULT_BUFFER_SIZE);
+    }
+  }
+
+  /**
+   * Write metadata of persisted partition needed to restore it without reading its data, records which have not been
+   * written yet and keys retained by record index are not included
+   * 
+   * @param out DataOutputStream
+   * @throws IOException
+   */
+  void writeState(DataOutputStream out) throws IOException {
+    if (segmentLog != null) {
+      throw new IllegalStateException("Partition stored in segment log can not be restored");
+    }
+    int recordCount = getPersistedRecordCount();
+
+    out.writeUTF(uuid);
+    out.writeLong(size);
+    out.writeInt(recordCount);
+    for (int i = 0; i < recordCount; i++) {
+      out.writeLong(recordOffsets[i]);
+      out.writeInt(recordLengths[i]);
+    }
+
+    long[] superseded = supersededOrdinals.toLongArray();
+    out.writeInt(supersededCount);
+    out.writeInt(superseded.length);
+    for (long word : superseded) {
+      out.writeLong(word);
+    }
+
+    out.writeBoolean(bloomFilter != null);
+    if (bloomFilter != null) {
+      bloomFilter.writeTo(out);
+    }
+
+    out.writeInt(sections.size());
+    for (Section section : sections) {
+      out.writeInt(section.firstOrdinal);
+      out.writeLong(section.position);
+      out.writeLong(section.length);
+      out.writeLong(section.checksum);
+      out.writeBoolean(section.keyId != null);
+      if (section.keyId != null) {
+        out.writeUTF(section.keyId);
+      }
+      out.writeInt(section.blockOffsets != null ? section.blockOffsets.length : -1);
+      if (section.blockOffsets != null) {
+        // Offsets only locate records together with the block size they were written with
+        out.writeInt(section.blockSize);
+        for (long blockOffset : section.blockOffsets) {
+          out.writeLong(blockOffset);
+        }
+      }
+    }
+  }
+
+  /**
+   * Restore persisted partition from metadata written by {@link #writeState(DataOutputStream)}, data stays on disk
+   * until it is loaded
+   * 
+   * @param in DataInputStream
+   * @throws IOException
+   */
+  void readState(DataInputStream in) throws IOException {
+    this.uuid = in.readUTF();
+    this.size = in.readLong();
+
+    int recordCount = in.readInt();
+    recordOffsets = new long[recordCount];
+    recordLengths = new int[recordCount];
+    for (int i = 0; i < recordCount; i++) {
+      recordOffsets[i] = in.readLong();
+      recordLengths[i] = in.readInt();
+    }
+
+    this.supersededCount = in.readInt();
+    long[] superseded = new long[in.readInt()];
+    for (int i = 0; i < superseded.length; i++) {
+      superseded[i] = in.readLong();
+    }
+    this.supersededOrdinals = BitSet.valueOf(superseded);
+
+    if (in.readBoolean()) {
+      this.bloomFilter = BloomFilter.readFrom(in, Funnels.byteArrayFunnel());
+    }
+
+    int sectionCount = in.readInt();
+    for (int i = 0; i < sectionCount; i++) {
+      Section section = new Section(in.readInt(), in.readLong());
+      section.length = in.readLong();
+      section.checksum = in.readLong();
+      section.keyId = in.readBoolean() ? in.readUTF() : null;
+      int blockCount = in.readInt();
+      if (blockCount >= 0) {
+        section.blockSize = in.readInt();
+        section.blockOffsets = new long[blockCount];
+        for (int j = 0; j < blockCount; j++) {
+          section.blockOffsets[j] = in.readLong();
+        }
+      }
+      sections.add(section);
+    }
+    this.persisted = true;
+  }
+
+  /**
+   * Check that sections were encrypted exactly when encryption is configured and their keys can still be provided
+   * 
+   * @throws IOException if encryption of a section does not match configuration of partition
+   */
+  void verifyEncryption() throws IOException {
+    for (Section section : sections) {
+      if (section.keyId == null) {
+        if (encryption != null) {
+          throw new IOException("Storage file " + uuid + " is not encrypted but encryption keys are configured");
+        }
+        continue;
+      }
+      if (encryption == null) {
+        throw new IOException("Storage file " + uuid + " is encrypted but no encryption keys are configured");
+      }
+      try {
+        encryption.getKeyProvider().getKey(section.keyId);
+      } catch (Exception e) {
+        throw new IOException("Key " + section.keyId + " of storage file " + uuid + " can not be provided", e);
+      }
+    }
+  }
+
+  /**
+   * Check that stored sections have not been changed since they were written
+   * 
+   * @throws IOException if storage file is missing or a checksum does not match
+   */
+  void verifyChecksums() throws IOException {
+    byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    for (Section section : sections) {
+      try (CheckedInputStream cis = new CheckedInputStream(openRawInputStream(section), new CRC32())) {
+        while (cis.read(buffer) >= 0) {
+          // Checksum is updated while reading
+        }
+        if (cis.getChecksum().getValue() != section.checksum) {
+          throw new IOException("Checksum of partition " + uuid + " does not match");
+        }
+      }
+    }
+  }
+
+  /**
+   * Clean up memory using by data which has been written into disk, keys are kept by record index if needed.<br/>
+   * Dirty partition stays in memory until it has been written.
+   */
+  public void unload() {
+    if (isPersisted() && !isDirty()) {
+      dataMap.clear();
+    }
+  }
+
+  /**
+   * Load data from disk into memory, records which have not been written yet are kept
+   * 
+   * @throws FileNotFoundException
+   * @throws IOException
+   * @throws DataFormatException
+   */
+  @SuppressWarnings("unchecked")
+  public void load() throws FileNotFoundException, IOException {
+    if (isPersisted()) {
+      Map<K, T> dirtyMap = new LinkedHashMap<>();
+
+      for (Entry<K, byte[]> entry : encodedMap.entrySet()) {
+        if (entry.getValue() != TOMBSTONE) {
+          dirtyMap.put(entry.getKey(), dataMap.get(entry.getKey()));
+        }
+      }
+
+      // Clear the existing map
+      dataMap.clear();
+      // Single scratch buffer reused for every key and data
+      byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+
+      for (Section section : sections) {
+        try (DataInputStream dis = openInputStream(section)) {
+          // Read total key set
+          int total = dis.readInt();
+          Object[] keys = new Object[total];
+          int[] lengths = new int[total];
+          // Data section starts right after the header
+          long offset = DATA_ALIGNMENT_SIZE;
+
+          // Read all key value along side data length in byte
+          for (int i = 0; i < total; i++) {
+            int keyLength = dis.readInt();
+            lengths[i] = dis.readInt();
+
+            buffer = StorageUtil.ensureCapacity(buffer, keyLength);
+            dis.readFully(buffer, 0, keyLength);
+            keys[i] = keyCodec.decode(buffer, 0, keyLength);
+            offset += DATA_ALIGNMENT_SIZE * 2 + keyLength;
+          }
+
+          for (int i = 0; i < total; i++) {
+            final K key = (K) keys[i];
+            int ordinal = section.firstOrdinal + i;
+            int dataLength = lengths[i];
+
+            recordOffsets[ordinal] = offset;
+            recordLengths[ordinal] = dataLength;
+
+            // Record of newer section replaces the one of older section
+            if (dataLength == TOMBSTONE_LENGTH) {
+              dataMap.remove(key);
+              removedKeys.add(key);
+              if (recordIndex != null) {
+                recordIndex.remove(key);
+              }
+              continue;
+            }
+
+            buffer = StorageUtil.ensureCapacity(buffer, dataLength);
+            dis.readFully(buffer, 0, dataLength);
+            if (offHeapMap != null) {
+              offHeapMap.putEncoded(key, buffer, 0, dataLength);
+            } else {
+              dataMap.put(key, valueCodec.decode(buffer, 0, dataLength));
+            }
+            removedKeys.remove(key);
+
+            if (recordIndex != null) {
+              recordIndex.put(key, ordinal);
+            }
+            offset += dataLength;
+          }
+        }
+      }
+
+      // Records which have not been written yet replace persisted ones
+      for (Entry<K, byte[]> entry : encodedMap.entrySet()) {
+        if (entry.getValue() == TOMBSTONE) {
+          dataMap.remove(entry.getKey());
+        }
+      }
+      dataMap.putAll(dirtyMap);
+    }
+  }
+
+  /**
+   * Walk all records of partition without loading it into memory, persisted records are read sequentially section by
+   * section followed by records which have not been written yet.<br/>
+   * A record replaced by a newer section is walked as well, caller can skip it by its ordinal. Records which have not
+   * been written yet are walked with ordinal -1, removals are walked with null value.
+   * 
+   * @param consumer RecordConsumer<K, T>
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked")
+  public void forEachRecord(RecordConsumer<K, T> consumer) throws IOException {
+    // Single scratch buffer reused for every key and data
+    byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    for (Section section : sections) {
+      try (DataInputStream dis = openInputStream(section)) {
+        int total = dis.readInt();
+        Object[] keys = new Object[total];
+        int[] lengths = new int[total];
+
+        for (int i = 0; i < total; i++) {
+          int keyLength = dis.readInt();
+          lengths[i] = dis.readInt();
+
+          buffer = StorageUtil.ensureCapacity(buffer, keyLength);
+          dis.readFully(buffer, 0, keyLength);
+          keys[i] = keyCodec.decode(buffer, 0, keyLength);
+        }
+
+        for (int i = 0; i < total; i++) {
+          T value = null;
+
+          if (lengths[i] != TOMBSTONE_LENGTH) {
+            buffer = StorageUtil.ensureCapacity(buffer, lengths[i]);
+            dis.readFully(buffer, 0, lengths[i]);
+            value = valueCodec.decode(buffer, 0, lengths[i]);
+          }
+          // Record which has been added again is walked from data map
+          if (!encodedMap.containsKey(keys[i])) {
+            consumer.accept(section.firstOrdinal + i, (K) keys[i], value);
+          }
+        }
+      }
+    }
+
+    for (Entry<K, byte[]> entry : encodedMap.entrySet()) {
+      consumer.accept(-1, entry.getKey(), entry.getValue() != TOMBSTONE ? dataMap.get(entry.getKey()) : null);
+    }
+  }
+
+  /**
+   * Open each section of storage file as a run read sequentially, records of a section are in key order when it has
+   * been written in sorted mode
+   * 
+   * @return List<RecordRun<K, T>> runs from the oldest to the newest section
+   * @throws IOException
+   */
+  List<RecordRun<K, T>> openSectionRuns() throws IOException {
+    List<RecordRun<K, T>> runs = new ArrayList<>();
+
+    try {
+      for (Section section : sections) {
+        runs.add(new SectionRun(section));
+      }
+    } catch (IOException | RuntimeException e) {
+      for (RecordRun<K, T> run : runs) {
+        StorageUtil.closeQuietly(run);
+      }
+      throw e;
+    }
+    return runs;
+  }
+
+  /**
+   * Open section of storage file for sequential reading
+   * 
+   * @param section Section
+   * @return DataInputStream
+   * @throws IOException
+   */
+  private DataInputStream openInputStream(Section section) throws IOException {
+    InputStream fis = openRawInputStream(section);
+
+    try {
+      if (encryption != null) {
+        fis = encryption.decryptingStream(new BufferedInputStream(fis, DEFAULT_BUFFER_SIZE));
+      }
+
+      switch (compression) {
+        case GZIP:
+          return new DataInputStream(new GZIPInputStream(fis, DEFAULT_BUFFER_SIZE));
+        case DEFLATE:
+        case LZ:
+          return new DataInputStream(new BlockCompressedInputStream(new BufferedInputStream(fis, DEFAULT_BUFFER_SIZE),
+              createBlockCompressor()));
+        default:
+          return new DataInputStream(new BufferedInputStream(fis, DEFAULT_BUFFER_SIZE));
+      }
+    } catch (IOException e) {
+      StorageUtil.closeQuietly(fis);
+      throw e;
+    }
+  }
+
+  /**
+   * Open stored data of section without decompression
+   * 
+   * @param section Section
+   * @return InputStream
+   */
+  private InputStream openRawInputStream(final Section section) {
+    return new PositionalInputStream(section.length) {
+      @Override
+      protected int read(ByteBuffer buffer, long position) throws IOException {
+        return readSection(section, buffer, position);
+      }
+    };
+  }
+
+  /**
+   * Get temporary file path on disk
+   * 
+   * @return File
+   */
+  public File getStorageFile() {
+    String directory = config.getDirectory() != null ? config.getDirectory().getPath() : TEMP_DIR;
+    return Path.of(directory, uuid + STORAGE_FILE_EXTENSION).toFile();
+  }
+
+  /**
+   * Consumer of records walked by {@link TemporaryPartition#forEachRecord(RecordConsumer)}
+   */
+  @FunctionalInterface
+  public interface RecordConsumer<K, T> {
+
+    /**
+     * Accept a record
+     * 
+     * @param ordinal int, -1 if record has not been written yet
+     * @param key K
+     * @param value T, null if record is a removal
+     * @throws IOException
+     */
+    void accept(int ordinal, K key, T value) throws IOException;
+  }
+
+  /**
+   * Records of one section read sequentially
+   */
+  private class SectionRun implements RecordRun<K, T> {
+
+    /** Stream positioned at data of the next record */
+    private final DataInputStream dis;
+
+    /** Ordinal of the first record of section */
+    private final int firstOrdinal;
+
+    /** Keys of section */
+    private final Object[] keys;
+
+    /** Length of data of each record */
+    private final int[] lengths;
+
+    /** Position of current record inside section */
+    private int position = -1;
+
+    /** Value of current record */
+    private T value;
+
+    /** Scratch buffer reused for every data */
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    SectionRun(Section section) throws IOException {
+      this.dis = openInputStream(section);
+      this.firstOrdinal = section.firstOrdinal;
+
+      try {
+        int total = dis.readInt();
+        keys = new Object[total];
+        lengths = new int[total];
+
+        for (int i = 0; i < total; i++) {
+          int keyLength = dis.readInt();
+          lengths[i] = dis.readInt();
+
+          buffer = StorageUtil.ensureCapacity(buffer, keyLength);
+          dis.readFully(buffer, 0, keyLength);
+          keys[i] = keyCodec.decode(buffer, 0, keyLength);
+        }
+      } catch (IOException | RuntimeException e) {
+        StorageUtil.closeQuietly(dis);
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (++position >= keys.length) {
+        return false;
+      }
+
+      value = null;
+      if (lengths[position] != TOMBSTONE_LENGTH) {
+        buffer = StorageUtil.ensureCapacity(buffer, lengths[position]);
+        dis.readFully(buffer, 0, lengths[position]);
+        value = valueCodec.decode(buffer, 0, lengths[position]);
+      }
+      return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public K getKey() {
+      return (K) keys[position];
+    }
+
+    @Override
+    public T getValue() {
+      return value;
+    }
+
+    @Override
+    public int getOrdinal() {
+      return firstOrdinal + position;
+    }
+
+    @Override
+    public void close() throws IOException {
+      dis.close();
+    }
+  }
+
+  /**
+   * Records taken by {@link TemporaryPartition#prepareWrite()} together with their positions once they have been
+   * written
+   */
+  final class PendingWrite {
+
+    /** Key and encoded data of records */
+    private final List<Entry<K, byte[]>> records;
+
+    /** Section receiving records */
+    private final Section section;
+
+    /** Offset of each record inside section */
+    private final long[] offsets;
+
+    /** Length of each record */
+    private final int[] lengths;
+
+    /** Encoded key of each record */
+    private final byte[][] keyArrays;
+
+    private PendingWrite(List<Entry<K, byte[]>> records, Section section) {
+      this.records = records;
+      this.section = section;
+      this.offsets = new long[records.size()];
+      this.lengths = new int[records.size()];
+      this.keyArrays = new byte[records.size()][];
+    }
+  }
+
+  /**
+   * Records written by one save, stored either as a range of the storage file or as a region of segment log
+   */
+  private static class Section {
+
+    /** Ordinal of first record in section */
+    private final int firstOrdinal;
+
+    /** Position of section inside the storage file, not used with segment log */
+    private final long position;
+
+    /** Length of stored section in byte */
+    private long length;
+
+    /** Region of segment log holding the section, null when partition has its own storage file */
+    private SegmentRegion region;
+
+    /** Offset of each compressed block inside section, available with block compression */
+    private long[] blockOffsets;
+
+    /** Size of raw data in each compressed block of section, available with block compression */
+    private int blockSize;
+
+    /** Reader of single block of section, opened by first read with block compression */
+    private BlockCompressedFile blockReader;
+
+    /** Reader decrypting single chunk of section, created by first read of encrypted section */
+    private DecryptingPositionalReader decryptor;
+
+    /** Read-only memory mapping of section, available in memory mapped mode after first read */
+    private MappedByteBuffer mappedBuffer;
+
+    /** Id of key encrypting section, null when section is not encrypted */
+    private String keyId;
+
+    /** CRC32 of stored section, not used with segment log */
+    private long checksum;
+
+    private Section(int firstOrdinal, long position) {
+      this.firstOrdinal = firstOrdinal;
+      this.position = position;
+    }
   }
 }
@@ -1,15 +1,43 @@
 package UtilitiesToolLib.module.TemporaryStorage;
 
 import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import UtilitiesToolLib.module.TemporaryStorage.codec.Codec;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Temporary storage utility class <br/>
- * It keeps a small amount of data on memory, others will be persisted into hard disk
+ * It keeps a small amount of data on memory, others will be persisted into hard disk.<br/>
+ * Integer and Long keys are indexed by a primitive hash table and written into disk in fixed width binary, maps of
+ * partitions still hold them boxed since keys come boxed through the generic API.
  * 
  */
 @Slf4j
@@ -18,21 +46,107 @@ public class TemporaryStorage<K, T> extends AbstractTemporaryStorage<K, T> imple
   /** Active partition */
   private TemporaryPartition<K, T> activePartition;
 
-  /** Persisted partitions */
-  private List<TemporaryPartition<K, T>> persistedPartitions;
+  /** All partitions including the active one, position in list is the partition number */
+  private List<TemporaryPartition<K, T>> partitions;
 
-  /** Limit size of each partition in byte */
-  private long limitSize;
+  /** Index of all keys and location of their records, not used when bloom filter is enabled */
+  private KeyIndex<K> keyIndex;
 
-  /** Flag indicates whether data should be compress before writing into disk */
-  private boolean compress;
+  /** Persisted partitions currently loaded into memory, in least recently used order */
+  private Map<TemporaryPartition<K, T>, Boolean> residentPartitions;
+
+  /** Full partitions being written into disk in background, in submission order */
+  private Map<TemporaryPartition<K, T>, Future<TemporaryPartition<K, T>.PendingWrite>> spillingPartitions;
+
+  /** Executor writing full partitions in background, null when asynchronous spill is disabled */
+  private ExecutorService spillExecutor;
+
+  /** Log shared by all partitions, null when each partition has its own file */
+  private SegmentLog segmentLog;
+
+  /** Persisted partitions waiting for their live records to be moved into the active partition with their numbers */
+  private Map<TemporaryPartition<K, T>, Integer> compactingPartitions;
+
+  /** Records of the partition being compacted, null when no compaction is in progress */
+  private Compaction compaction;
+
+  /** Monitor of heap usage, null unless memory pressure spill policy is used */
+  private MemoryPressureMonitor memoryMonitor;
+
+  /** Last collection whose memory pressure has been handled */
+  private long handledPressureGeneration;
+
+  /** Storage files of partitions released since the last checkpoint, removed once manifest no longer needs them */
+  private List<File> releasedFiles;
+
+  /** Statistics of partition cache */
+  private TemporaryStorageStatistics statistics;
+
+  /** Configuration of storage */
+  private TemporaryStorageConfig config;
 
   protected TemporaryStorage(long limitSize, boolean compress) {
+    this(TemporaryStorageConfig.builder().limitSize(limitSize).compress(compress).build());
+  }
+
+  protected TemporaryStorage(TemporaryStorageConfig config) {
     super();
-    this.limitSize = limitSize;
-    this.compress = compress;
+    initialize(config);
+  }
+
+  protected TemporaryStorage(TemporaryStorageConfig config, Class<K> clazzKey, Class<T> clazzValue) {
+    super(clazzKey, clazzValue);
+    initialize(config);
+  }
+
+  TemporaryStorage(TemporaryStorageConfig config, Class<K> clazzKey, Class<T> clazzValue,
+      MemoryPressureMonitor memoryMonitor) {
+    super(clazzKey, clazzValue);
+    this.memoryMonitor = memoryMonitor;
+    initialize(config);
+  }
+
+  /**
+   * Initialize storage
+   * 
+   * @param config TemporaryStorageConfig
+   */
+  private void initialize(TemporaryStorageConfig config) {
+    if (config.isDurable() && (config.getDirectory() == null || config.isSegmentLog())) {
+      throw new IllegalArgumentException("Durable mode requires a directory and partitions in their own files");
+    }
+    if (config.getDirectory() != null && !config.getDirectory().isDirectory() && !config.getDirectory().mkdirs()) {
+      throw new IllegalArgumentException("Directory " + config.getDirectory() + " can not be created");
+    }
+    this.config = config;
+    partitions = new ArrayList<>();
+    releasedFiles = new ArrayList<>();
+    if (config.isSegmentLog()) {
+      segmentLog = new SegmentLog(config.getDirectory(), config.getSegmentSize(), config.getCompactionThreshold());
+    }
+    keyIndex = KeyIndex.create(getClazzKey());
     activePartition = createNewPartition();
-    persistedPartitions = new ArrayList<>();
+    residentPartitions = new LinkedHashMap<>(16, 0.75f, true);
+    spillingPartitions = new LinkedHashMap<>();
+    compactingPartitions = new LinkedHashMap<>();
+    statistics = new TemporaryStorageStatistics();
+
+    if (config.getSpillPolicy() == SpillPolicy.MEMORY_PRESSURE) {
+      if (memoryMonitor == null) {
+        memoryMonitor = MemoryPressureMonitor.getInstance();
+      }
+      handledPressureGeneration = memoryMonitor.getGeneration();
+    } else {
+      memoryMonitor = null;
+    }
+
+    if (config.isAsyncSpill()) {
+      spillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "temporary-storage-spill");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
   }
 
   /**
@@ -40,11 +154,199 @@ public class TemporaryStorage<K, T> extends AbstractTemporaryStorage<K, T> imple
    */
   @Override
   public void close() {
-    activePartition.close();
+    if (config.isDurable()) {
+      try {
+        checkpoint();
+      } catch (IOException e) {
+        log.error("Temporary storage checkpoint: an error has been occurred", e);
+      }
+    }
+    if (spillExecutor != null) {
+      // Wait for background writes before removing their files
+      completeSpills(true);
+      spillExecutor.shutdown();
+    }
+    if (compaction != null) {
+      compaction.close();
+    }
+    for (TemporaryPartition<K, T> partition : partitions) {
+      // Files of durable storage are kept for the next open
+      partition.close(!config.isDurable());
+    }
+    residentPartitions.clear();
+    keyIndex.clear();
+    if (segmentLog != null) {
+      segmentLog.close();
+    }
+  }
+
+  /**
+   * Open durable storage kept in directory of the configuration.<br/>
+   * State of the last checkpoint is restored without reading data again, storage files which do not belong to it are
+   * removed. An empty storage is created when directory has no manifest.
+   * 
+   * @param config TemporaryStorageConfig in durable mode, compression, bloom filter and codecs must match the stored
+   *          ones, block size of compression is taken from the stored sections
+   * @param clazzKey Class<K>
+   * @param clazzValue Class<T>
+   * @return TemporaryStorage<K, T>
+   * @throws IOException if manifest is damaged or a storage file is missing or has been changed
+   */
+  public static <K, T> TemporaryStorage<K, T> open(TemporaryStorageConfig config, Class<K> clazzKey,
+      Class<T> clazzValue) throws IOException {
+    if (!config.isDurable()) {
+      throw new IllegalArgumentException("Only durable storage can be opened");
+    }
+    TemporaryStorage<K, T> storage = new TemporaryStorage<>(config, clazzKey, clazzValue);
 
-    for (TemporaryPartition<K, T> partition : persistedPartitions) {
-      partition.close();
+    try {
+      storage.restore();
+    } catch (IOException | RuntimeException e) {
+      // Files stay untouched, so opening can be retried
+      storage.releasedFiles.clear();
+      for (TemporaryPartition<K, T> partition : storage.partitions) {
+        partition.close(false);
+      }
+      throw e;
     }
+    return storage;
+  }
+
+  /**
+   * Write all data into disk and record state of storage in manifest, so storage can be opened again after restart
+   * 
+   * @throws IOException
+   */
+  public void checkpoint() throws IOException {
+    if (!config.isDurable()) {
+      throw new IllegalStateException("Checkpoint requires durable mode");
+    }
+    if (spillExecutor != null) {
+      completeSpills(true);
+    }
+    if (activePartition.getRecordCount() > 0) {
+      if (config.isSorted()) {
+        sortActivePartition();
+      }
+      activePartition.save();
+      dropRemovedMarkers();
+      activePartition = createNewPartition();
+    }
+    for (TemporaryPartition<K, T> partition : residentPartitions.keySet()) {
+      // Partition whose background write has failed is written again
+      partition.write();
+    }
+
+    StorageManifest.write(config.getDirectory(), this::writeManifest);
+
+    for (File file : releasedFiles) {
+      Files.deleteIfExists(file.toPath());
+    }
+    releasedFiles.clear();
+    log.info("Temporary storage: checkpoint of {} partitions has been written", partitions.size());
+  }
+
+  /**
+   * Write state of storage into manifest
+   * 
+   * @param out DataOutputStream
+   * @throws IOException
+   */
+  private void writeManifest(DataOutputStream out) throws IOException {
+    Codec<K> keyCodec = activePartition.getKeyCodec();
+
+    out.writeUTF(activePartition.getCompression().name());
+    out.writeBoolean(config.isBloomFilter());
+    out.writeUTF(keyCodec.getName());
+    out.writeUTF(activePartition.getValueCodec().getName());
+    out.writeInt(partitions.size());
+    for (TemporaryPartition<K, T> partition : partitions) {
+      // Released and empty partitions only keep their number
+      out.writeBoolean(partition.isPersisted());
+      if (partition.isPersisted()) {
+        partition.writeState(out);
+      }
+    }
+
+    out.writeInt(keyIndex.size());
+    try {
+      keyIndex.forEach((key, location) -> {
+        try {
+          byte[] keyArray = keyCodec.encode(key);
+          out.writeInt(keyArray.length);
+          out.write(keyArray);
+          out.writeLong(location);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Restore state of the last checkpoint from manifest then remove storage files which do not belong to it
+   * 
+   * @throws IOException
+   */
+  private void restore() throws IOException {
+    File directory = config.getDirectory();
+    Set<String> referenced = new HashSet<>();
+
+    boolean restored = StorageManifest.read(directory, in -> {
+      if (!activePartition.getCompression().name().equals(in.readUTF()) || config.isBloomFilter() != in.readBoolean()
+          || !activePartition.getKeyCodec().getName().equals(in.readUTF())
+          || !activePartition.getValueCodec().getName().equals(in.readUTF())) {
+        throw new IOException("Manifest of " + directory + " does not match configuration of storage");
+      }
+      // Initial active partition is empty and has no file
+      partitions.clear();
+
+      int partitionCount = in.readInt();
+      for (int i = 0; i < partitionCount; i++) {
+        TemporaryPartition<K, T> partition = createNewPartition();
+        if (in.readBoolean()) {
+          partition.readState(in);
+          partition.verifyEncryption();
+          partition.verifyChecksums();
+          referenced.add(partition.getStorageFile().getName());
+        }
+      }
+
+      Codec<K> keyCodec = activePartition.getKeyCodec();
+      int keyCount = in.readInt();
+      byte[] keyArray = new byte[0];
+      for (int i = 0; i < keyCount; i++) {
+        int keyLength = in.readInt();
+        keyArray = StorageUtil.ensureCapacity(keyArray, keyLength);
+        in.readFully(keyArray, 0, keyLength);
+        keyIndex.put(keyCodec.decode(keyArray, 0, keyLength), in.readLong());
+      }
+      activePartition = createNewPartition();
+    });
+
+    // Files written after the last checkpoint or released before it
+    StorageManifest.deleteIncomplete(directory);
+    File[] orphans = directory.listFiles((dir, name) -> name.endsWith(TemporaryPartition.STORAGE_FILE_EXTENSION)
+        && !referenced.contains(name));
+    if (orphans != null) {
+      for (File orphan : orphans) {
+        if (orphan.delete()) {
+          log.info("Temporary storage: orphaned file {} has been removed", orphan.getName());
+        }
+      }
+    }
+    log.info("Temporary storage: {} has been opened, manifest restored: {}", directory, restored);
+  }
+
+  /**
+   * Get statistics of partition cache
+   * 
+   * @return TemporaryStorageStatistics
+   */
+  public TemporaryStorageStatistics getStatistics() {
+    return statistics;
   }
 
   /**
@@ -55,22 +357,371 @@ public class TemporaryStorage<K, T> extends AbstractTemporaryStorage<K, T> imple
    * @throws Exception
    */
   public void add(final K key, final T value) throws Exception {
+    if (key == null) {
+      throw new IllegalArgumentException("Key can not be null");
+    }
+    if (value == null) {
+      // Null can not be told from a removed record, use remove instead
+      throw new IllegalArgumentException("Value can not be null");
+    }
+    addRecord(key, value);
+    compactStep();
+  }
+
+  /**
+   * Add data into the active partition, saving the active partition first when it is full
+   * 
+   * @param key K
+   * @param value T
+   * @throws Exception
+   */
+  private void addRecord(final K key, final T value) throws Exception {
+    boolean underPressure = isUnderMemoryPressure();
+    // Spilling a tiny partition on every collection would only create many small files
+    boolean pressureSpill = underPressure && activePartition.getMemorySize() >= config.getMinPressureSpillSize();
+
     // If current size of partition is exceeding limit
     // Try to save it into disk then create brand new for storing data
-    if (activePartition.getSize() >= limitSize) {
-      try {
-        activePartition.save();
-        if (persistedPartitions.indexOf(activePartition) < 0) {
-          persistedPartitions.add(activePartition);
-        }
-
+    if (isActivePartitionFull() || pressureSpill) {
+      if (config.isSorted()) {
+        sortActivePartition();
+      }
+      if (spillExecutor != null) {
+        spill(activePartition);
+        dropRemovedMarkers();
         activePartition = createNewPartition();
-      } catch (IOException e) {
-        log.error("Temporary storage save paritition: an error has been occurred", e);
+      } else {
+        try {
+          activePartition.save();
+          dropRemovedMarkers();
+          activePartition = createNewPartition();
+        } catch (IOException e) {
+          log.error("Temporary storage save paritition: an error has been occurred", e);
+        }
       }
     }
+    if (underPressure) {
+      evictAllResidentPartitions();
+    }
+
+    if (config.isBloomFilter()) {
+      // Keys of persisted partitions are answered by their bloom filters
+      activePartition.add(key, value);
+      return;
+    }
+
+    int activeNo = partitions.size() - 1;
+    long location = keyIndex.get(key);
+    boolean removed = KeyIndex.isRemoved(location);
+
+    if (removed) {
+      location = KeyIndex.fromRemoved(location);
+    }
+
+    // Record keeps its ordinal when the key is added again into the same partition
+    boolean sameActive = location != KeyIndex.NOT_FOUND && KeyIndex.getPartitionNo(location) == activeNo;
+    int ordinal = sameActive ? KeyIndex.getOrdinal(location) : activePartition.getRecordCount();
 
     activePartition.add(key, value);
+    keyIndex.put(key, KeyIndex.toLocation(activeNo, ordinal));
+
+    if (sameActive && removed) {
+      activePartition.reviveSuperseded(ordinal);
+    } else if (location != KeyIndex.NOT_FOUND && !sameActive && !removed) {
+      supersede(KeyIndex.getPartitionNo(location), KeyIndex.getOrdinal(location));
+    }
+  }
+
+  /**
+   * Add data with specific key, replacing the existing data.<br/>
+   * Previous data is read before it is replaced, which may read it from disk, use {@link #upsert(Object, Object)} when
+   * it is not needed.
+   * 
+   * @param key K
+   * @param value T
+   * @return T previous data, null if key did not exist
+   * @throws Exception
+   */
+  public T put(final K key, final T value) throws Exception {
+    T previous = get(key);
+    add(key, value);
+    return previous;
+  }
+
+  /**
+   * Add data with specific key, replacing the existing data without reading it
+   * 
+   * @param key K
+   * @param value T
+   * @return boolean true if key existed
+   * @throws Exception
+   */
+  public boolean upsert(final K key, final T value) throws Exception {
+    // Existence is answered by key index or bloom filters and key tables, data is never decoded
+    boolean existed = containsKey(key);
+    add(key, value);
+    return existed;
+  }
+
+  /**
+   * Remove data associated with the specific key.<br/>
+   * With key index the record is only dropped from index, with bloom filter a removal is added into the active
+   * partition so records of older partitions are hidden.
+   * 
+   * @param key K
+   * @return boolean true if key existed
+   * @throws Exception
+   */
+  public boolean remove(final K key) throws Exception {
+    if (key == null) {
+      throw new IllegalArgumentException("Key can not be null");
+    }
+    if (spillExecutor != null) {
+      completeSpills(false);
+    }
+
+    if (config.isBloomFilter()) {
+      if (!containsKey(key)) {
+        return false;
+      }
+      activePartition.remove(key);
+      return true;
+    }
+
+    long location = findLocation(key);
+
+    if (location == KeyIndex.NOT_FOUND) {
+      return false;
+    }
+
+    int partitionNo = KeyIndex.getPartitionNo(location);
+
+    if (partitions.get(partitionNo) == activePartition) {
+      activePartition.remove(key);
+      activePartition.markSuperseded(KeyIndex.getOrdinal(location));
+      // Ordinal stays reserved, so the key gets the same ordinal when added again
+      keyIndex.put(key, KeyIndex.toRemoved(location));
+    } else {
+      keyIndex.remove(key);
+      supersede(partitionNo, KeyIndex.getOrdinal(location));
+    }
+    compactStep();
+    return true;
+  }
+
+  /**
+   * Get total size in byte of live data, replaced and removed records are not counted.<br/>
+   * With bloom filter records replaced or removed by newer partitions can not be tracked and are still counted.
+   * 
+   * @return long
+   */
+  public long getSize() {
+    long size = 0;
+
+    for (TemporaryPartition<K, T> partition : partitions) {
+      size += partition.getLiveSize();
+    }
+    return size;
+  }
+
+  /**
+   * Get location of the specific key in key index
+   * 
+   * @param key K
+   * @return long, {@link KeyIndex#NOT_FOUND} if key does not exist or has been removed
+   */
+  private long findLocation(final K key) {
+    long location = keyIndex.get(key);
+    return KeyIndex.isRemoved(location) ? KeyIndex.NOT_FOUND : location;
+  }
+
+  /**
+   * Mark record of partition as replaced or removed, partition is released when nothing is left and queued for
+   * compaction when live records fall below the partition compaction threshold
+   * 
+   * @param partitionNo int
+   * @param ordinal int
+   * @throws Exception
+   */
+  private void supersede(int partitionNo, int ordinal) throws Exception {
+    TemporaryPartition<K, T> partition = partitions.get(partitionNo);
+
+    if (partition.markSuperseded(ordinal)) {
+      releaseSuperseded(partition);
+    } else if (partition != activePartition && partition.isPersisted()
+        && !spillingPartitions.containsKey(partition) && !compactingPartitions.containsKey(partition)
+        && partition.getSupersededCount() > partition.getRecordCount()
+            * (1 - config.getPartitionCompactionThreshold())) {
+      compactingPartitions.put(partition, partitionNo);
+    }
+  }
+
+  /**
+   * Move a bounded number of records of queued partitions into the active partition, so a partition is released once
+   * all of its live records have been added again without a single call moving a whole partition
+   * 
+   * @throws Exception
+   */
+  private void compactStep() throws Exception {
+    for (int budget = config.getCompactionBatchSize(); budget > 0; budget--) {
+      if (compaction == null) {
+        Iterator<Map.Entry<TemporaryPartition<K, T>, Integer>> queued = compactingPartitions.entrySet().iterator();
+        if (!queued.hasNext()) {
+          return;
+        }
+        Map.Entry<TemporaryPartition<K, T>, Integer> next = queued.next();
+        log.info("Temporary storage: compact {}", next.getKey().getUuid());
+        compaction = new Compaction(next.getKey(), next.getValue());
+      }
+
+      Compaction current = compaction;
+      if (!current.next()) {
+        current.close();
+      } else if (current.getValue() != null && isLive(current.getKey(), current.partitionNo, current.getOrdinal(),
+          null)) {
+        // Partition is released and its compaction closed once its last live record is added again
+        addRecord(current.getKey(), current.getValue());
+      }
+    }
+  }
+
+  /**
+   * Sort records of the active partition by key before it is written, locations of its keys follow their records
+   */
+  private void sortActivePartition() {
+    activePartition.sortRecords();
+    if (config.isBloomFilter()) {
+      return;
+    }
+
+    int activeNo = partitions.size() - 1;
+    int ordinal = activePartition.getPersistedRecordCount();
+
+    for (K key : activePartition.getEncodedMap().keySet()) {
+      long location = keyIndex.get(key);
+      boolean removed = KeyIndex.isRemoved(location);
+
+      if (removed) {
+        location = KeyIndex.fromRemoved(location);
+      }
+      if (location != KeyIndex.NOT_FOUND && KeyIndex.getPartitionNo(location) == activeNo) {
+        long sorted = KeyIndex.toLocation(activeNo, ordinal);
+        keyIndex.put(key, removed ? KeyIndex.toRemoved(sorted) : sorted);
+      }
+      ordinal++;
+    }
+  }
+
+  /**
+   * Drop markers of keys removed from the active partition before it is replaced, its ordinals are not reused anymore
+   * so the markers would only hold slots of key index
+   */
+  private void dropRemovedMarkers() {
+    if (config.isBloomFilter()) {
+      return;
+    }
+    int activeNo = partitions.size() - 1;
+
+    for (K key : activePartition.getRemovedKeys()) {
+      long location = keyIndex.get(key);
+
+      if (KeyIndex.isRemoved(location) && KeyIndex.getPartitionNo(KeyIndex.fromRemoved(location)) == activeNo) {
+        keyIndex.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Check whether active partition has reached limit size
+   * 
+   * @return boolean
+   */
+  private boolean isActivePartitionFull() {
+    if (config.getSpillPolicy() == SpillPolicy.MEMORY_PRESSURE && config.getLimitSize() <= 0) {
+      return false;
+    }
+    // Encoded copies kept until the partition is written take heap besides decoded values
+    return activePartition.getMemorySize() >= config.getLimitSize();
+  }
+
+  /**
+   * Check whether heap usage after the latest garbage collection has reached the memory pressure threshold, each
+   * collection is reported only once since usage is not measured again before next collection
+   * 
+   * @return boolean
+   */
+  private boolean isUnderMemoryPressure() {
+    if (memoryMonitor == null) {
+      return false;
+    }
+
+    long generation = memoryMonitor.getGeneration();
+
+    if (generation == handledPressureGeneration) {
+      return false;
+    }
+    handledPressureGeneration = generation;
+
+    if (memoryMonitor.getUsageRatio() < config.getMemoryPressureThreshold()) {
+      return false;
+    }
+    log.warn("Temporary storage: heap usage {}% after garbage collection, release memory",
+        Math.round(memoryMonitor.getUsageRatio() * 100));
+    return true;
+  }
+
+  /**
+   * Release all resident partitions from memory, least recently used first
+   * 
+   * @throws IOException
+   */
+  private void evictAllResidentPartitions() throws IOException {
+    Iterator<TemporaryPartition<K, T>> iterator = residentPartitions.keySet().iterator();
+
+    while (iterator.hasNext()) {
+      TemporaryPartition<K, T> eldest = iterator.next();
+      iterator.remove();
+
+      log.info("Temporary storage: evict {} from memory", eldest.getUuid());
+      eldest.save();
+      statistics.recordEviction();
+    }
+  }
+
+  /**
+   * Close partition whose records have all been replaced by newer partitions, so its disk space can be reclaimed
+   * 
+   * @param partition TemporaryPartition<K, T>
+   */
+  private void releaseSuperseded(TemporaryPartition<K, T> partition) {
+    // Partition being written in background is released once its write has completed
+    if (partition != activePartition && !spillingPartitions.containsKey(partition)) {
+      log.info("Temporary storage: release superseded {}", partition.getUuid());
+      if (compaction != null && compaction.partition == partition) {
+        compaction.close();
+      }
+      compactingPartitions.remove(partition);
+      residentPartitions.remove(partition);
+      if (config.isDurable()) {
+        // Manifest of the last checkpoint may still refer to the file
+        partition.close(false);
+        releasedFiles.add(partition.getStorageFile());
+      } else {
+        partition.close();
+      }
+    }
+  }
+
+  /**
+   * Add all entries of the given map
+   * 
+   * @param map Map<? extends K, ? extends T>
+   * @throws Exception
+   */
+  public void addAll(final Map<? extends K, ? extends T> map) throws Exception {
+    for (Map.Entry<? extends K, ? extends T> entry : map.entrySet()) {
+      add(entry.getKey(), entry.getValue());
+    }
   }
 
   /**
@@ -83,42 +734,366 @@ public class TemporaryStorage<K, T> extends AbstractTemporaryStorage<K, T> imple
     if (key == null) {
       throw new IllegalArgumentException("Key can not be null");
     }
-    if (activePartition.containsKey(key)) {
-      return activePartition.get(key);
+    if (spillExecutor != null) {
+      completeSpills(false);
     }
     try {
-      TemporaryPartition<K, T> activeCandidate = null;
+      if (config.isBloomFilter()) {
+        return getByBloomFilter(key);
+      }
+      return getByLocation(key, findLocation(key));
+    } catch (IOException e) {
+      log.error("Temporary storage load paritition: an error has been occurred", e);
+    }
 
-      for (TemporaryPartition<K, T> persistedPartition : persistedPartitions) {
-        if (persistedPartition.containsKey(key)) {
-          activeCandidate = persistedPartition;
-          break;
+    return null;
+  }
+
+  /**
+   * Get data associated with each of the specific keys.<br/>
+   * Keys are looked up in order of their partitions, so each persisted partition is read at most once.
+   * 
+   * @param keys Collection<K>
+   * @return Map<K, T> data of existing keys in order of the given keys
+   */
+  public Map<K, T> getAll(final Collection<K> keys) {
+    if (spillExecutor != null) {
+      completeSpills(false);
+    }
+    Map<K, T> found = new HashMap<>();
+
+    try {
+      if (config.isBloomFilter()) {
+        getAllByBloomFilter(keys, found);
+      } else {
+        // Location is ordered by partition number then ordinal
+        TreeMap<Long, K> locations = new TreeMap<>();
+
+        for (K key : keys) {
+          long location = key != null ? findLocation(key) : KeyIndex.NOT_FOUND;
+          if (location != KeyIndex.NOT_FOUND) {
+            locations.put(location, key);
+          }
+        }
+        for (Map.Entry<Long, K> entry : locations.entrySet()) {
+          found.put(entry.getValue(), getByLocation(entry.getValue(), entry.getKey()));
         }
       }
-      if (activeCandidate != null) {
-        log.info("Temporary storage: swap {} for {}", activePartition.getUuid(), activeCandidate.getUuid());
-        // Load data of active candidate from disk into memory
-        activeCandidate.load();
-        // Save data of active partition from memory into disk
-        activePartition.save();
+    } catch (IOException e) {
+      log.error("Temporary storage load paritition: an error has been occurred", e);
+    }
+
+    Map<K, T> result = new LinkedHashMap<>();
+
+    for (K key : keys) {
+      T value = found.get(key);
+      if (value != null) {
+        result.put(key, value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get data associated with the given keys by probing partitions from the newest one, keys answered by the same
+   * partition are read together in ordinal order so each partition is loaded at most once
+   * 
+   * @param keys Collection<K>
+   * @param found Map<K, T> receiving data of found keys
+   * @throws IOException
+   */
+  private void getAllByBloomFilter(final Collection<K> keys, Map<K, T> found) throws IOException {
+    Set<K> pending = new HashSet<>();
+
+    for (K key : keys) {
+      if (key != null) {
+        pending.add(key);
+      }
+    }
 
-        // Swap current active partition and candidate
-        persistedPartitions.remove(activeCandidate);
+    for (int partitionNo = partitions.size() - 1; partitionNo >= 0 && !pending.isEmpty(); partitionNo--) {
+      TemporaryPartition<K, T> candidate = partitions.get(partitionNo);
 
-        if (persistedPartitions.indexOf(activePartition) < 0) {
-          persistedPartitions.add(activePartition);
+      if (isInMemory(candidate)) {
+        for (Iterator<K> iterator = pending.iterator(); iterator.hasNext();) {
+          K key = iterator.next();
+          if (candidate.containsKey(key)) {
+            statistics.recordHit();
+            found.put(key, candidate.get(key));
+            iterator.remove();
+          } else if (candidate.isRemoved(key)) {
+            iterator.remove();
+          }
         }
-        activePartition = activeCandidate;
+        // Mark partition as most recently used
+        residentPartitions.get(candidate);
+        continue;
+      }
 
-        return activePartition.get(key);
+      TreeMap<Integer, K> ordinals = new TreeMap<>();
+      for (Iterator<K> iterator = pending.iterator(); iterator.hasNext();) {
+        K key = iterator.next();
+        int ordinal = candidate.mightContain(key) ? candidate.findOrdinal(key) : -1;
+        if (ordinal >= 0) {
+          ordinals.put(ordinal, key);
+          iterator.remove();
+        }
+      }
+      // Partition loaded by the first read answers the following keys from memory
+      for (Map.Entry<Integer, K> entry : ordinals.entrySet()) {
+        found.put(entry.getValue(), getByLocation(entry.getValue(), KeyIndex.toLocation(partitionNo, entry.getKey())));
       }
+    }
+  }
+
+  /**
+   * Get data associated with the specific key at its location in key index
+   * 
+   * @param key K
+   * @param location long
+   * @return T
+   * @throws IOException
+   */
+  private T getByLocation(final K key, long location) throws IOException {
+    if (location == KeyIndex.NOT_FOUND) {
+      return null;
+    }
+
+    TemporaryPartition<K, T> candidate = partitions.get(KeyIndex.getPartitionNo(location));
+
+    if (isInMemory(candidate)) {
+      statistics.recordHit();
+      // Mark partition as most recently used
+      residentPartitions.get(candidate);
+      return candidate.get(key);
+    }
+    return readPersisted(candidate, key, KeyIndex.getOrdinal(location));
+  }
+
+  /**
+   * Perform the given action for each entry partition by partition.<br/>
+   * Persisted partitions are read sequentially without being loaded into memory, replaced records are skipped.
+   * 
+   * @param action BiConsumer<? super K, ? super T>
+   * @throws IOException
+   */
+  public void forEach(final BiConsumer<? super K, ? super T> action) throws IOException {
+    if (spillExecutor != null) {
+      completeSpills(false);
+    }
+    Set<K> seen = config.isBloomFilter() ? new HashSet<>() : null;
+
+    for (int partitionNo : getWalkOrder()) {
+      walkPartition(partitionNo, seen, action);
+    }
+  }
+
+  /**
+   * Get a sequential stream of all entries partition by partition, only one partition is held in memory at a time.<br/>
+   * Storage must not be modified while the stream is consumed.
+   * 
+   * @return Stream<Map.Entry<K, T>>
+   */
+  public Stream<Map.Entry<K, T>> stream() {
+    if (spillExecutor != null) {
+      completeSpills(false);
+    }
+    Set<K> seen = config.isBloomFilter() ? new HashSet<>() : null;
+
+    return Arrays.stream(getWalkOrder()).boxed().flatMap(partitionNo -> {
+      List<Map.Entry<K, T>> entries = new ArrayList<>();
+      try {
+        walkPartition(partitionNo, seen,
+            (key, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<K, T>(key, value)));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return entries.stream();
+    });
+  }
+
+  /**
+   * Get a stream of all entries in key order, partitions written in sorted mode are merged while they are read
+   * sequentially, partitions in memory are sorted in memory.<br/>
+   * Stream must be closed to release storage files. Storage must not be modified while the stream is consumed.
+   * 
+   * @return Stream<Map.Entry<K, T>>
+   */
+  public Stream<Map.Entry<K, T>> sortedStream() {
+    if (!config.isSorted()) {
+      throw new IllegalStateException("Sorted stream requires sorted mode");
+    }
+    if (spillExecutor != null) {
+      completeSpills(false);
+    }
+    List<RecordRun<K, T>> runs = new ArrayList<>();
+    List<Integer> runPartitions = new ArrayList<>();
+    Comparator<? super K> comparator = activePartition.getKeyComparator();
+    MergeIterator<K, T> iterator;
+
+    try {
+      for (int partitionNo = 0; partitionNo < partitions.size(); partitionNo++) {
+        TemporaryPartition<K, T> partition = partitions.get(partitionNo);
+
+        if (isInMemory(partition)) {
+          List<Map.Entry<K, T>> entries = new ArrayList<>();
+          for (Map.Entry<K, T> entry : partition.getDataMap().entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<K, T>(entry.getKey(), entry.getValue()));
+          }
+          if (config.isBloomFilter()) {
+            // Removals hide records of older partitions
+            for (K key : partition.getRemovedKeys()) {
+              entries.add(new AbstractMap.SimpleImmutableEntry<K, T>(key, null));
+            }
+          }
+          entries.sort(Map.Entry.comparingByKey(comparator));
+          runs.add(RecordRun.of(entries));
+          runPartitions.add(partitionNo);
+        } else if (partition.isPersisted()) {
+          for (RecordRun<K, T> run : partition.openSectionRuns()) {
+            runs.add(run);
+            runPartitions.add(partitionNo);
+          }
+        }
+      }
+      iterator = new MergeIterator<>(runs, comparator, (runNo, key, ordinal) -> config.isBloomFilter()
+          || isLive(key, runPartitions.get(runNo), ordinal, null));
     } catch (IOException e) {
-      log.error("Temporary storage load paritition: an error has been occurred", e);
+      for (RecordRun<K, T> run : runs) {
+        StorageUtil.closeQuietly(run);
+      }
+      throw new UncheckedIOException(e);
+    }
+
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(iterator::close);
+  }
+
+  /**
+   * Get order of partitions walked by iteration, newest partition goes first when bloom filter is enabled so the latest
+   * record of each key is met first
+   * 
+   * @return int[]
+   */
+  private int[] getWalkOrder() {
+    int count = partitions.size();
+
+    if (config.isBloomFilter()) {
+      return IntStream.range(0, count).map(i -> count - 1 - i).toArray();
+    }
+    return IntStream.range(0, count).toArray();
+  }
+
+  /**
+   * Perform the given action for each live entry of partition
+   * 
+   * @param partitionNo int
+   * @param seen Set<K> keys already walked, null when key index is used
+   * @param action BiConsumer<? super K, ? super T>
+   * @throws IOException
+   */
+  private void walkPartition(final int partitionNo, final Set<K> seen, final BiConsumer<? super K, ? super T> action)
+      throws IOException {
+    TemporaryPartition<K, T> partition = partitions.get(partitionNo);
+
+    if (isInMemory(partition)) {
+      if (seen != null) {
+        // Removals hide records of older partitions
+        seen.addAll(partition.getRemovedKeys());
+      }
+      for (Map.Entry<K, T> entry : partition.getDataMap().entrySet()) {
+        if (isLive(entry.getKey(), partitionNo, -1, seen)) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }
+    } else if (partition.isPersisted()) {
+      partition.forEachRecord((ordinal, key, value) -> {
+        // Removal is checked after key has been marked as seen, so it hides records of older partitions
+        if (isLive(key, partitionNo, ordinal, seen) && value != null) {
+          action.accept(key, value);
+        }
+      });
     }
+  }
 
+  /**
+   * Check whether record is the latest record of its key
+   * 
+   * @param key K
+   * @param partitionNo int
+   * @param ordinal int, -1 if record is the latest record of key inside partition
+   * @param seen Set<K> keys already walked, null when key index is used
+   * @return boolean
+   */
+  private boolean isLive(final K key, int partitionNo, int ordinal, Set<K> seen) {
+    if (seen != null) {
+      return seen.add(key);
+    }
+    long location = findLocation(key);
+
+    return location != KeyIndex.NOT_FOUND && KeyIndex.getPartitionNo(location) == partitionNo
+        && (ordinal < 0 || KeyIndex.getOrdinal(location) == ordinal);
+  }
+
+  /**
+   * Get data associated with the specific key by probing bloom filter of each partition from the newest one
+   * 
+   * @param key K
+   * @return T
+   * @throws IOException
+   */
+  private T getByBloomFilter(final K key) throws IOException {
+    for (int partitionNo = partitions.size() - 1; partitionNo >= 0; partitionNo--) {
+      TemporaryPartition<K, T> candidate = partitions.get(partitionNo);
+
+      if (isInMemory(candidate)) {
+        if (candidate.containsKey(key)) {
+          statistics.recordHit();
+          // Mark partition as most recently used
+          residentPartitions.get(candidate);
+          return candidate.get(key);
+        }
+        if (candidate.isRemoved(key)) {
+          return null;
+        }
+      } else if (candidate.mightContain(key)) {
+        int ordinal = candidate.findOrdinal(key);
+
+        if (ordinal >= 0) {
+          return readPersisted(candidate, key, ordinal);
+        }
+      }
+    }
     return null;
   }
 
+  /**
+   * Read data of persisted partition which is not in memory
+   * 
+   * @param candidate TemporaryPartition<K, T>
+   * @param key K
+   * @param ordinal int
+   * @return T
+   * @throws IOException
+   */
+  private T readPersisted(TemporaryPartition<K, T> candidate, final K key, int ordinal) throws IOException {
+    statistics.recordMiss();
+
+    if (config.isRandomAccess() || candidate.isMemoryMapped()) {
+      // Read the single record from disk, resident partitions stay in memory
+      return candidate.read(ordinal);
+    }
+
+    log.info("Temporary storage: load {} into memory", candidate.getUuid());
+    // Load data of candidate from disk into memory
+    candidate.load();
+    residentPartitions.put(candidate, Boolean.TRUE);
+    evictResidentPartitions();
+
+    return candidate.get(key);
+  }
+
   /**
    * Check whether value associated with specific key is existed or not
    * 
@@ -126,23 +1101,221 @@ public class TemporaryStorage<K, T> extends AbstractTemporaryStorage<K, T> imple
    * @return boolean
    */
   public boolean containsKey(final K key) {
-    if (activePartition.containsKey(key)) {
-      return true;
+    if (key == null) {
+      return false;
     }
-    for (TemporaryPartition<K, T> persistedPartition : persistedPartitions) {
-      if (persistedPartition.containsKey(key)) {
-        return true;
+    if (!config.isBloomFilter()) {
+      return findLocation(key) != KeyIndex.NOT_FOUND;
+    }
+    try {
+      // Newest partition holds the latest record of key, a removal hides records of older partitions
+      for (int partitionNo = partitions.size() - 1; partitionNo >= 0; partitionNo--) {
+        TemporaryPartition<K, T> partition = partitions.get(partitionNo);
+
+        if (isInMemory(partition)) {
+          if (partition.containsKey(key) || partition.isRemoved(key)) {
+            return partition.containsKey(key);
+          }
+        } else if (partition.mightContain(key)) {
+          int ordinal = partition.findOrdinal(key);
+          if (ordinal >= 0) {
+            return !partition.isTombstone(ordinal);
+          }
+        }
       }
+    } catch (IOException e) {
+      log.error("Temporary storage read key table: an error has been occurred", e);
     }
     return false;
   }
 
+  /**
+   * Check whether data of partition is in memory
+   * 
+   * @param partition TemporaryPartition<K, T>
+   * @return boolean
+   */
+  private boolean isInMemory(TemporaryPartition<K, T> partition) {
+    return partition == activePartition || residentPartitions.containsKey(partition)
+        || spillingPartitions.containsKey(partition);
+  }
+
+  /**
+   * Hand full partition over to background writer, blocks while too many partitions are waiting to be written
+   * 
+   * @param partition TemporaryPartition<K, T>
+   */
+  private void spill(TemporaryPartition<K, T> partition) {
+    completeSpills(false);
+
+    // Back-pressure: wait for the oldest write when background writer falls behind
+    while (spillingPartitions.size() >= Math.max(config.getMaxPendingSpills(), 1)) {
+      completeSpill(spillingPartitions.keySet().iterator().next());
+    }
+
+    // Records are taken on this thread, background writer does not change state of partition read meanwhile
+    TemporaryPartition<K, T>.PendingWrite pending = partition.prepareWrite();
+
+    spillingPartitions.put(partition, spillExecutor.submit(() -> {
+      if (pending != null) {
+        partition.writePending(pending);
+      }
+      return pending;
+    }));
+  }
+
+  /**
+   * Release memory of partitions whose background write has finished
+   * 
+   * @param wait if true wait for all pending writes
+   */
+  private void completeSpills(boolean wait) {
+    List<TemporaryPartition<K, T>> completed = new ArrayList<>();
+
+    for (Map.Entry<TemporaryPartition<K, T>, Future<TemporaryPartition<K, T>.PendingWrite>> entry : spillingPartitions
+        .entrySet()) {
+      if (wait || entry.getValue().isDone()) {
+        completed.add(entry.getKey());
+      }
+    }
+    for (TemporaryPartition<K, T> partition : completed) {
+      completeSpill(partition);
+    }
+  }
+
+  /**
+   * Wait for background write of partition then release its memory.<br/>
+   * If writing failed, partition stays in memory as a resident partition and is written again when evicted.
+   * 
+   * @param partition TemporaryPartition<K, T>
+   */
+  private void completeSpill(TemporaryPartition<K, T> partition) {
+    Future<TemporaryPartition<K, T>.PendingWrite> future = spillingPartitions.remove(partition);
+
+    try {
+      TemporaryPartition<K, T>.PendingWrite pending = future.get();
+      if (pending != null) {
+        partition.completeWrite(pending);
+      }
+      partition.unload();
+      if (partition.getSupersededCount() >= partition.getRecordCount()) {
+        releaseSuperseded(partition);
+      }
+    } catch (ExecutionException e) {
+      log.error("Temporary storage save paritition: an error has been occurred", e.getCause());
+      residentPartitions.put(partition, Boolean.TRUE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      residentPartitions.put(partition, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Release least recently used partitions from memory until resident partitions fit the configured budget
+   * 
+   * @throws IOException
+   */
+  private void evictResidentPartitions() throws IOException {
+    long residentBytes = 0;
+
+    for (TemporaryPartition<K, T> partition : residentPartitions.keySet()) {
+      residentBytes += partition.getSize();
+    }
+
+    Iterator<TemporaryPartition<K, T>> iterator = residentPartitions.keySet().iterator();
+
+    // Always keep the most recently used partition
+    while (residentPartitions.size() > 1 && (residentPartitions.size() > config.getMaxResidentPartitions()
+        || (config.getMaxResidentBytes() > 0 && residentBytes > config.getMaxResidentBytes()))) {
+      TemporaryPartition<K, T> eldest = iterator.next();
+      iterator.remove();
+      residentBytes -= eldest.getSize();
+
+      log.info("Temporary storage: evict {} from memory", eldest.getUuid());
+      // Clean up memory using by data of eldest partition
+      eldest.save();
+      statistics.recordEviction();
+    }
+  }
+
   /**
    * Create new partition for storing data
    * 
    * @return TemporaryPartition
    */
   private TemporaryPartition<K, T> createNewPartition() {
-    return new TemporaryPartition<K, T>(this.compress, getClazzKey(), getClazzValue());
+    // Keys are kept by key index of storage, partition does not need to retain them after saving
+    TemporaryPartition<K, T> partition =
+        new TemporaryPartition<K, T>(config, false, segmentLog, getClazzKey(), getClazzValue());
+    partitions.add(partition);
+    return partition;
+  }
+
+  /**
+   * Records of persisted partition read section by section while they are moved into the active partition
+   */
+  private class Compaction implements Closeable {
+
+    private final TemporaryPartition<K, T> partition;
+
+    private final int partitionNo;
+
+    /** Runs of sections from the oldest one, opened on first use */
+    private List<RecordRun<K, T>> runs;
+
+    /** Position of current run */
+    private int runNo;
+
+    private Compaction(TemporaryPartition<K, T> partition, int partitionNo) {
+      this.partition = partition;
+      this.partitionNo = partitionNo;
+    }
+
+    /**
+     * Move to the next record of partition
+     * 
+     * @return boolean false when all records have been read
+     * @throws IOException
+     */
+    private boolean next() throws IOException {
+      if (runs == null) {
+        runs = partition.openSectionRuns();
+      }
+      while (runNo < runs.size()) {
+        if (runs.get(runNo).next()) {
+          return true;
+        }
+        runs.get(runNo++).close();
+      }
+      return false;
+    }
+
+    private K getKey() {
+      return runs.get(runNo).getKey();
+    }
+
+    private T getValue() {
+      return runs.get(runNo).getValue();
+    }
+
+    private int getOrdinal() {
+      return runs.get(runNo).getOrdinal();
+    }
+
+    /**
+     * Close remaining runs and remove partition from compaction queue
+     */
+    @Override
+    public void close() {
+      if (runs != null) {
+        for (; runNo < runs.size(); runNo++) {
+          StorageUtil.closeQuietly(runs.get(runNo));
+        }
+      }
+      compactingPartitions.remove(partition);
+      if (compaction == this) {
+        compaction = null;
+      }
+    }
   }
 }
@@ -0,0 +1,148 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import java.io.File;
+import java.util.Comparator;
+import java.util.zip.Deflater;
+
+import UtilitiesToolLib.common.util.KeyProvider;
+import UtilitiesToolLib.module.TemporaryStorage.codec.Codec;
+import UtilitiesToolLib.module.TemporaryStorage.compression.CompressionType;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Configuration of temporary storage
+ */
+@Getter
+@Builder(toBuilder = true)
+public class TemporaryStorageConfig {
+
+  /** Codec of key, default codec of key type is used if null */
+  private Codec<?> keyCodec;
+
+  /** Codec of value, default codec of value type is used if null */
+  private Codec<?> valueCodec;
+
+  /**
+   * Limit size of each partition in byte, encoded records kept in memory until the partition is written are counted
+   * besides their decoded values
+   */
+  private long limitSize;
+
+  /** Policy deciding when data in memory is written into disk */
+  @Builder.Default
+  private SpillPolicy spillPolicy = SpillPolicy.SIZE;
+
+  /** Ratio of heap used after garbage collection from which memory pressure spill policy releases memory */
+  @Builder.Default
+  private double memoryPressureThreshold = 0.75;
+
+  /** Minimum size in byte of the active partition written into disk on memory pressure, smaller ones stay in memory */
+  @Builder.Default
+  private long minPressureSpillSize = 1024 * 1024;
+
+  /** Flag indicates whether data should be compress before writing into disk */
+  private boolean compress;
+
+  /** Compression of partition files, if null GZIP is used when compress flag is set */
+  private CompressionType compression;
+
+  /** Compression level, only used by Deflate */
+  @Builder.Default
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+  /** Size of raw data in each compressed block in byte, a point read decompresses only blocks of the record */
+  @Builder.Default
+  private int compressionBlockSize = 64 * 1024;
+
+  /**
+   * Flag indicates whether a value of persisted partition is read record by record from disk instead of reloading the
+   * whole partition into memory
+   */
+  private boolean randomAccess;
+
+  /**
+   * Flag indicates whether uncompressed persisted partitions are memory mapped, values are decoded straight from the
+   * mapped file instead of reloading partitions into heap
+   */
+  private boolean memoryMapped;
+
+  /** Maximum number of persisted partitions kept in memory besides the active partition */
+  @Builder.Default
+  private int maxResidentPartitions = 1;
+
+  /** Maximum total size in byte of persisted partitions kept in memory, zero means no limit */
+  private long maxResidentBytes;
+
+  /**
+   * Flag indicates whether keys of persisted partitions are dropped from memory and only a bloom filter per partition
+   * is kept, lookups which pass the filter are confirmed by reading key table from disk
+   */
+  private boolean bloomFilter;
+
+  /** Expected false positive probability of bloom filter */
+  @Builder.Default
+  private double bloomFilterFpp = 0.01;
+
+  /** Number of stripes used by concurrent storage, each stripe has its own active partition and lock */
+  @Builder.Default
+  private int concurrencyLevel = Runtime.getRuntime().availableProcessors();
+
+  /** Flag indicates whether full partitions are written into disk by a background thread */
+  private boolean asyncSpill;
+
+  /** Maximum number of partitions waiting to be written in background before adding data blocks */
+  @Builder.Default
+  private int maxPendingSpills = 2;
+
+  /** Flag indicates whether partitions are appended into a few shared segment files instead of one file each */
+  private boolean segmentLog;
+
+  /** Size of segment file in byte after which a new segment file is started */
+  @Builder.Default
+  private long segmentSize = 64L * 1024 * 1024;
+
+  /** Ratio of live data below which a full segment file is compacted in background */
+  @Builder.Default
+  private double compactionThreshold = 0.5;
+
+  /** Ratio of live records below which a persisted partition is compacted into the active partition */
+  @Builder.Default
+  private double partitionCompactionThreshold = 0.5;
+
+  /** Maximum number of records read by compaction of partitions during a single add or remove */
+  @Builder.Default
+  private int compactionBatchSize = 1024;
+
+  /** Directory of partition and segment log files, java.io.tmpdir if not set */
+  private File directory;
+
+  /**
+   * Flag indicates whether storage files and a manifest of storage are kept in directory when storage is closed, so
+   * storage can be opened again after restart. Storage must be opened by {@link TemporaryStorage#open} to resume. Not
+   * supported by {@link ConcurrentTemporaryStorage}.
+   */
+  private boolean durable;
+
+  /**
+   * Flag indicates whether records of each partition are written in key order, so storage can be read in key order by
+   * merging partitions
+   */
+  private boolean sorted;
+
+  /** Comparator of keys used by sorted mode, null means natural order of keys */
+  private Comparator<?> keyComparator;
+
+  /** Flag indicates whether records kept in memory are stored encoded outside of java heap and decoded on each read */
+  private boolean offHeap;
+
+  /** Size in byte of each off-heap buffer holding records kept in memory */
+  @Builder.Default
+  private int offHeapChunkSize = 1024 * 1024;
+
+  /**
+   * Provider of keys encrypting storage files at rest by AES-GCM, null means files are not encrypted. Single record of
+   * an encrypted file is read by decrypting only the chunks holding it, files are never memory mapped.
+   */
+  private KeyProvider encryptionKeys;
+}
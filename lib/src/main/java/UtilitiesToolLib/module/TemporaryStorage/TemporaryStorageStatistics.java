@@ -0,0 +1,42 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import lombok.Getter;
+
+/**
+ * Statistics of partition cache in temporary storage
+ */
+@Getter
+public class TemporaryStorageStatistics {
+
+  /** Number of lookups served by partitions resident in memory */
+  private long hitCount;
+
+  /** Number of lookups which had to read data from disk */
+  private long missCount;
+
+  /** Number of partitions evicted from memory */
+  private long evictionCount;
+
+  void recordHit() {
+    hitCount++;
+  }
+
+  void recordMiss() {
+    missCount++;
+  }
+
+  void recordEviction() {
+    evictionCount++;
+  }
+
+  void merge(TemporaryStorageStatistics other) {
+    hitCount += other.hitCount;
+    missCount += other.missCount;
+    evictionCount += other.evictionCount;
+  }
+
+  @Override
+  public String toString() {
+    return "hit=" + hitCount + ", miss=" + missCount + ", eviction=" + evictionCount;
+  }
+}
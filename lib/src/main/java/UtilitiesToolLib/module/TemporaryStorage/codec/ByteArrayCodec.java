@@ -0,0 +1,20 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.util.Arrays;
+
+/**
+ * Codec of raw byte array, data is stored as is.<br/>
+ * Encoded data is a copy, so changing the array after it has been added does not change the stored record.
+ */
+public class ByteArrayCodec implements Codec<byte[]> {
+
+  @Override
+  public byte[] encode(byte[] value) {
+    return value.clone();
+  }
+
+  @Override
+  public byte[] decode(byte[] array, int offset, int length) {
+    return Arrays.copyOfRange(array, offset, offset + length);
+  }
+}
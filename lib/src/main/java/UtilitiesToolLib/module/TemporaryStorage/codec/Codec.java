@@ -0,0 +1,60 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Convert key or value of temporary storage from/to byte array
+ * 
+ * @param <T> type of data
+ */
+public interface Codec<T> {
+
+  /**
+   * Encode data into byte array
+   * 
+   * @param value T
+   * @return byte[]
+   * @throws IOException
+   */
+  byte[] encode(T value) throws IOException;
+
+  /**
+   * Decode data from a range of byte array
+   * 
+   * @param array byte[]
+   * @param offset int
+   * @param length int
+   * @return T
+   * @throws IOException
+   */
+  T decode(byte[] array, int offset, int length) throws IOException;
+
+  /**
+   * Get name identifying format of encoded data, durable storage refuses to open data written by a codec of another
+   * name
+   * 
+   * @return String
+   */
+  default String getName() {
+    return getClass().getName();
+  }
+
+  /**
+   * Decode data from a range of byte buffer, position of buffer is not changed.<br/>
+   * Default implementation copies the range into a byte array, codecs able to read the buffer directly override it.
+   * 
+   * @param buffer ByteBuffer
+   * @param offset int
+   * @param length int
+   * @return T
+   * @throws IOException
+   */
+  default T decode(ByteBuffer buffer, int offset, int length) throws IOException {
+    byte[] array = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(offset);
+    source.get(array);
+    return decode(array, 0, length);
+  }
+}
@@ -0,0 +1,90 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Built-in codecs of temporary storage
+ */
+@UtilityClass
+public class Codecs {
+
+  /** String in UTF-8 charset */
+  public static final Codec<String> STRING = new StringCodec();
+
+  /** Raw byte array */
+  public static final Codec<byte[]> BYTE_ARRAY = new ByteArrayCodec();
+
+  /** Integer in 4 bytes */
+  public static final Codec<Integer> INTEGER = new IntegerCodec();
+
+  /** Long in 8 bytes */
+  public static final Codec<Long> LONG = new LongCodec();
+
+  /** Double in 8 bytes */
+  public static final Codec<Double> DOUBLE = new DoubleCodec();
+
+  private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+  private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+  private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+  /**
+   * Get default codec of the specific type: string and byte array are stored as is, integer and long are stored in
+   * fixed width binary, others are stored as JSON. Byte array is no longer stored as base64 JSON text, so files
+   * written by older versions can not be read.
+   * 
+   * @param clazz Class<T>
+   * @return Codec<T>
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Codec<T> forClass(Class<T> clazz) {
+    if (String.class.equals(clazz)) {
+      return (Codec<T>) STRING;
+    }
+    if (byte[].class.equals(clazz)) {
+      return (Codec<T>) BYTE_ARRAY;
+    }
+    if (Integer.class.equals(clazz)) {
+      return (Codec<T>) INTEGER;
+    }
+    if (Long.class.equals(clazz)) {
+      return (Codec<T>) LONG;
+    }
+    return json(clazz);
+  }
+
+  /**
+   * Get JSON text codec
+   * 
+   * @param clazz Class<T>
+   * @return Codec<T>
+   */
+  public static <T> Codec<T> json(Class<T> clazz) {
+    return new JacksonCodec<>(JSON_MAPPER, clazz);
+  }
+
+  /**
+   * Get Smile binary JSON codec
+   * 
+   * @param clazz Class<T>
+   * @return Codec<T>
+   */
+  public static <T> Codec<T> smile(Class<T> clazz) {
+    return new JacksonCodec<>(SMILE_MAPPER, clazz);
+  }
+
+  /**
+   * Get CBOR binary codec
+   * 
+   * @param clazz Class<T>
+   * @return Codec<T>
+   */
+  public static <T> Codec<T> cbor(Class<T> clazz) {
+    return new JacksonCodec<>(CBOR_MAPPER, clazz);
+  }
+}
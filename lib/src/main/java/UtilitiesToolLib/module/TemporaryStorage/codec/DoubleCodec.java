@@ -0,0 +1,24 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of double in 8 bytes Big Endian
+ */
+public class DoubleCodec implements Codec<Double> {
+
+  @Override
+  public byte[] encode(Double value) {
+    return ByteBuffer.allocate(Double.BYTES).putDouble(value).array();
+  }
+
+  @Override
+  public Double decode(byte[] array, int offset, int length) {
+    return ByteBuffer.wrap(array, offset, length).getDouble();
+  }
+
+  @Override
+  public Double decode(ByteBuffer buffer, int offset, int length) {
+    return buffer.getDouble(offset);
+  }
+}
@@ -0,0 +1,24 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of integer in 4 bytes Big Endian
+ */
+public class IntegerCodec implements Codec<Integer> {
+
+  @Override
+  public byte[] encode(Integer value) {
+    return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+  }
+
+  @Override
+  public Integer decode(byte[] array, int offset, int length) {
+    return ByteBuffer.wrap(array, offset, length).getInt();
+  }
+
+  @Override
+  public Integer decode(ByteBuffer buffer, int offset, int length) {
+    return buffer.getInt(offset);
+  }
+}
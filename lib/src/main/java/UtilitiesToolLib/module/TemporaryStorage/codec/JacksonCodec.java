@@ -0,0 +1,61 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * Codec of any object using Jackson, data format depends on the factory of object mapper (JSON, Smile, CBOR...)
+ * 
+ * @param <T> type of data
+ */
+public class JacksonCodec<T> implements Codec<T> {
+
+  private final ObjectReader reader;
+
+  private final ObjectWriter writer;
+
+  /** Data format and type of codec */
+  private final String name;
+
+  /**
+   * Create codec
+   * 
+   * @param objectMapper ObjectMapper, shared by all codecs using the same format
+   * @param clazz Class<T>
+   */
+  public JacksonCodec(ObjectMapper objectMapper, Class<T> clazz) {
+    this.reader = objectMapper.readerFor(clazz);
+    this.writer = objectMapper.writerFor(clazz);
+    this.name = getClass().getName() + ":" + objectMapper.getFactory().getFormatName() + ":" + clazz.getName();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public byte[] encode(T value) throws IOException {
+    return writer.writeValueAsBytes(value);
+  }
+
+  @Override
+  public T decode(byte[] array, int offset, int length) throws IOException {
+    return reader.readValue(array, offset, length);
+  }
+
+  @Override
+  public T decode(ByteBuffer buffer, int offset, int length) throws IOException {
+    if (buffer.hasArray()) {
+      return decode(buffer.array(), buffer.arrayOffset() + offset, length);
+    }
+    ByteBuffer source = buffer.duplicate();
+    source.position(offset).limit(offset + length);
+    return reader.readValue(new ByteBufferBackedInputStream(source));
+  }
+}
@@ -0,0 +1,24 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of long in 8 bytes Big Endian
+ */
+public class LongCodec implements Codec<Long> {
+
+  @Override
+  public byte[] encode(Long value) {
+    return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+  }
+
+  @Override
+  public Long decode(byte[] array, int offset, int length) {
+    return ByteBuffer.wrap(array, offset, length).getLong();
+  }
+
+  @Override
+  public Long decode(ByteBuffer buffer, int offset, int length) {
+    return buffer.getLong(offset);
+  }
+}
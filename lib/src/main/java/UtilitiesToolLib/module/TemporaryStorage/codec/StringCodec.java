@@ -0,0 +1,27 @@
+package UtilitiesToolLib.module.TemporaryStorage.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec of string in UTF-8 charset
+ */
+public class StringCodec implements Codec<String> {
+
+  @Override
+  public byte[] encode(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String decode(byte[] array, int offset, int length) {
+    return new String(array, offset, length, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String decode(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer source = buffer.duplicate();
+    source.position(offset).limit(offset + length);
+    return StandardCharsets.UTF_8.decode(source).toString();
+  }
+}
@@ -0,0 +1,146 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access reader of file written by {@link BlockCompressedOutputStream}, only blocks containing the requested
+ * range are decompressed
+ */
+public class BlockCompressedFile implements Closeable {
+
+  /** Size of block header: raw length and stored length */
+  private static final int BLOCK_HEADER_SIZE = 8;
+
+  private final Source source;
+
+  private final long[] blockOffsets;
+
+  private final int blockSize;
+
+  private final BlockCompressor compressor;
+
+  /** Last decompressed block, kept for consecutive reads in the same block */
+  private byte[] block;
+
+  private int blockNo = -1;
+
+  private int blockLength;
+
+  private byte[] compressed = new byte[0];
+
+  /**
+   * Create reader
+   * 
+   * @param source Source of compressed data, closed together with reader
+   * @param blockOffsets long[] offset of each block inside source
+   * @param blockSize int size of raw data in each block
+   * @param compressor BlockCompressor, closed together with reader
+   */
+  public BlockCompressedFile(Source source, long[] blockOffsets, int blockSize, BlockCompressor compressor) {
+    this.source = source;
+    this.blockOffsets = blockOffsets;
+    this.blockSize = blockSize;
+    this.compressor = compressor;
+    this.block = new byte[blockSize];
+  }
+
+  /**
+   * Read a range of raw data
+   * 
+   * @param offset long offset in raw data
+   * @param length int
+   * @return byte[]
+   * @throws IOException
+   */
+  public byte[] read(long offset, int length) throws IOException {
+    byte[] result = new byte[length];
+    int copied = 0;
+
+    while (copied < length) {
+      long position = offset + copied;
+      loadBlock((int) (position / blockSize));
+
+      int blockPosition = (int) (position % blockSize);
+      int count = Math.min(length - copied, blockLength - blockPosition);
+      if (count <= 0) {
+        throw new EOFException("Unexpected end of compressed file");
+      }
+      System.arraycopy(block, blockPosition, result, copied, count);
+      copied += count;
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    compressor.close();
+    source.close();
+  }
+
+  private void loadBlock(int no) throws IOException {
+    if (no == blockNo) {
+      return;
+    }
+    if (no >= blockOffsets.length) {
+      throw new EOFException("Unexpected end of compressed file");
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    readFully(header, blockOffsets[no]);
+    header.flip();
+    int rawLength = header.getInt();
+    int storedLength = header.getInt();
+
+    if (storedLength > rawLength || storedLength < 0 || rawLength > block.length) {
+      throw new IOException("Corrupted compressed block");
+    }
+
+    // Invalidate cached block until it has been fully decompressed
+    blockNo = -1;
+    if (storedLength == rawLength) {
+      readFully(ByteBuffer.wrap(block, 0, rawLength), blockOffsets[no] + BLOCK_HEADER_SIZE);
+    } else {
+      if (compressed.length < storedLength) {
+        compressed = new byte[storedLength];
+      }
+      readFully(ByteBuffer.wrap(compressed, 0, storedLength), blockOffsets[no] + BLOCK_HEADER_SIZE);
+      compressor.decompress(compressed, storedLength, block, rawLength);
+    }
+    blockNo = no;
+    blockLength = rawLength;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int count = source.read(buffer, position);
+      if (count < 0) {
+        throw new EOFException("Unexpected end of compressed file");
+      }
+      position += count;
+    }
+  }
+
+  /**
+   * Source of compressed data read by position
+   */
+  public interface Source extends Closeable {
+
+    /**
+     * Read bytes into buffer starting at the given position
+     * 
+     * @param buffer ByteBuffer
+     * @param position long
+     * @return int number of bytes read, -1 at end of source
+     * @throws IOException
+     */
+    int read(ByteBuffer buffer, long position) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+      // Nothing to release by default
+    }
+  }
+}
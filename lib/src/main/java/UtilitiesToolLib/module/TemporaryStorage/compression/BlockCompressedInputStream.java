@@ -0,0 +1,104 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream reading data written by {@link BlockCompressedOutputStream} sequentially
+ */
+public class BlockCompressedInputStream extends InputStream {
+
+  private final DataInputStream in;
+
+  private final BlockCompressor compressor;
+
+  private byte[] block = new byte[0];
+
+  private byte[] compressed = new byte[0];
+
+  private int blockLength;
+
+  private int blockPosition;
+
+  private boolean finished;
+
+  /**
+   * Create stream
+   * 
+   * @param in InputStream
+   * @param compressor BlockCompressor, closed together with stream
+   */
+  public BlockCompressedInputStream(InputStream in, BlockCompressor compressor) {
+    this.in = new DataInputStream(in);
+    this.compressor = compressor;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureBlock()) {
+      return -1;
+    }
+    return block[blockPosition++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureBlock()) {
+      return -1;
+    }
+    int count = Math.min(len, blockLength - blockPosition);
+    System.arraycopy(block, blockPosition, b, off, count);
+    blockPosition += count;
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    compressor.close();
+    in.close();
+  }
+
+  /**
+   * Read next block if current block has been consumed
+   * 
+   * @return boolean false at the end of blocks
+   * @throws IOException
+   */
+  private boolean ensureBlock() throws IOException {
+    while (blockPosition == blockLength) {
+      if (finished) {
+        return false;
+      }
+      int rawLength = in.readInt();
+      int storedLength = in.readInt();
+
+      if (rawLength == 0) {
+        finished = true;
+        return false;
+      }
+      if (storedLength > rawLength || storedLength < 0) {
+        throw new EOFException("Corrupted compressed block");
+      }
+      if (block.length < rawLength) {
+        block = new byte[rawLength];
+      }
+      if (storedLength == rawLength) {
+        in.readFully(block, 0, rawLength);
+      } else {
+        if (compressed.length < storedLength) {
+          compressed = new byte[storedLength];
+        }
+        in.readFully(compressed, 0, storedLength);
+        compressor.decompress(compressed, storedLength, block, rawLength);
+      }
+      blockLength = rawLength;
+      blockPosition = 0;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,141 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream compressing data per fixed size block<br/>
+ * Block layout:
+ * <ul>
+ * <li>4 bytes: length of raw data, zero marks the end of blocks</li>
+ * <li>4 bytes: length of stored data, equal to raw length if data could not be compressed</li>
+ * <li>n bytes: stored data</li>
+ * </ul>
+ * Offsets of blocks are not written, they are kept by caller from {@link #getBlockOffsets()}.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+  private final DataOutputStream out;
+
+  private final BlockCompressor compressor;
+
+  private final byte[] block;
+
+  private final byte[] compressed;
+
+  private int blockLength;
+
+  /** Current position in underlying stream */
+  private long position;
+
+  private long[] blockOffsets = new long[16];
+
+  private int blockCount;
+
+  private boolean closed;
+
+  /**
+   * Create stream
+   * 
+   * @param out OutputStream
+   * @param compressor BlockCompressor, closed together with stream
+   * @param blockSize int size of raw data in each block
+   */
+  public BlockCompressedOutputStream(OutputStream out, BlockCompressor compressor, int blockSize) {
+    this.out = new DataOutputStream(out);
+    this.compressor = compressor;
+    this.block = new byte[blockSize];
+    this.compressed = new byte[blockSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (blockLength == block.length) {
+      writeBlock();
+    }
+    block[blockLength++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (blockLength == block.length) {
+        writeBlock();
+      }
+      int count = Math.min(len, block.length - blockLength);
+      System.arraycopy(b, off, block, blockLength, count);
+      blockLength += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  /**
+   * Flush underlying stream only, the current block is kept open until it is full or stream is closed
+   */
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Get size of raw data in each block
+   * 
+   * @return int
+   */
+  public int getBlockSize() {
+    return block.length;
+  }
+
+  /**
+   * Get file offset of each written block, complete after stream is closed
+   * 
+   * @return long[]
+   */
+  public long[] getBlockOffsets() {
+    return Arrays.copyOf(blockOffsets, blockCount);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      if (blockLength > 0) {
+        writeBlock();
+      }
+      // End of blocks
+      out.writeInt(0);
+      out.writeInt(0);
+      out.flush();
+    } finally {
+      compressor.close();
+      out.close();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if (blockCount == blockOffsets.length) {
+      blockOffsets = Arrays.copyOf(blockOffsets, blockCount << 1);
+    }
+    blockOffsets[blockCount++] = position;
+
+    int compressedLength = compressor.compress(block, blockLength, compressed);
+    boolean stored = compressedLength < 0 || compressedLength >= blockLength;
+
+    out.writeInt(blockLength);
+    out.writeInt(stored ? blockLength : compressedLength);
+    if (stored) {
+      out.write(block, 0, blockLength);
+    } else {
+      out.write(compressed, 0, compressedLength);
+    }
+    position += 8 + (stored ? blockLength : compressedLength);
+    blockLength = 0;
+  }
+}
@@ -0,0 +1,40 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Compress and decompress a single block of data.<br/>
+ * Instance may keep native resources, it is not thread safe and has to be closed after used.
+ */
+public interface BlockCompressor extends Closeable {
+
+  /**
+   * Compress data into destination
+   * 
+   * @param src byte[]
+   * @param srcLength int
+   * @param dst byte[]
+   * @return int length of compressed data, -1 if compressed data does not fit into destination
+   */
+  int compress(byte[] src, int srcLength, byte[] dst);
+
+  /**
+   * Decompress data into destination
+   * 
+   * @param src byte[]
+   * @param srcLength int
+   * @param dst byte[]
+   * @param rawLength int exact length of decompressed data
+   * @throws IOException
+   */
+  void decompress(byte[] src, int srcLength, byte[] dst, int rawLength) throws IOException;
+
+  /**
+   * Release resources of compressor
+   */
+  @Override
+  default void close() {
+    // nothing to release by default
+  }
+}
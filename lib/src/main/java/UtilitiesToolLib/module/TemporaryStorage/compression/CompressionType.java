@@ -0,0 +1,45 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+/**
+ * Compression of partition file
+ */
+public enum CompressionType {
+
+  /** Data is written as is */
+  NONE,
+
+  /** Whole file is compressed by GZIP, a record can only be read by decompressing everything before it */
+  GZIP,
+
+  /** File is compressed by Deflate per block, configurable level */
+  DEFLATE,
+
+  /** File is compressed by fast LZ codec per block */
+  LZ;
+
+  /**
+   * Check whether file is compressed per block, so a single block can be decompressed independently
+   * 
+   * @return boolean
+   */
+  public boolean isBlockCompressed() {
+    return this == DEFLATE || this == LZ;
+  }
+
+  /**
+   * Create block compressor
+   * 
+   * @param level int compression level, only used by Deflate
+   * @return BlockCompressor
+   */
+  public BlockCompressor createBlockCompressor(int level) {
+    switch (this) {
+      case DEFLATE:
+        return new DeflateBlockCompressor(level);
+      case LZ:
+        return new LzBlockCompressor();
+      default:
+        throw new UnsupportedOperationException(this + " is not a block compression");
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block compressor using raw Deflate
+ */
+public class DeflateBlockCompressor implements BlockCompressor {
+
+  private Deflater deflater;
+
+  private Inflater inflater;
+
+  private final int level;
+
+  /**
+   * Create compressor
+   * 
+   * @param level int compression level from 0 to 9, -1 for default level
+   */
+  public DeflateBlockCompressor(int level) {
+    this.level = level;
+  }
+
+  @Override
+  public int compress(byte[] src, int srcLength, byte[] dst) {
+    if (deflater == null) {
+      deflater = new Deflater(level, true);
+    }
+    deflater.reset();
+    deflater.setInput(src, 0, srcLength);
+    deflater.finish();
+
+    int length = 0;
+    while (!deflater.finished() && length < dst.length) {
+      length += deflater.deflate(dst, length, dst.length - length);
+    }
+    return deflater.finished() ? length : -1;
+  }
+
+  @Override
+  public void decompress(byte[] src, int srcLength, byte[] dst, int rawLength) throws IOException {
+    if (inflater == null) {
+      inflater = new Inflater(true);
+    }
+    inflater.reset();
+    inflater.setInput(src, 0, srcLength);
+
+    try {
+      int length = 0;
+      while (length < rawLength && !inflater.finished()) {
+        int count = inflater.inflate(dst, length, rawLength - length);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += count;
+      }
+      if (length != rawLength) {
+        throw new IOException("Corrupted deflate block");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupted deflate block", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (deflater != null) {
+      deflater.end();
+      deflater = null;
+    }
+    if (inflater != null) {
+      inflater.end();
+      inflater = null;
+    }
+  }
+}
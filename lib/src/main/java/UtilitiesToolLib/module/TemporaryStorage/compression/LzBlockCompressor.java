@@ -0,0 +1,175 @@
+package UtilitiesToolLib.module.TemporaryStorage.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 block compressor in pure Java, using a sequence format similar to LZ4 block format:
+ * <ul>
+ * <li>1 byte token: high 4 bits literal length, low 4 bits match length minus 4, value 15 means more length bytes
+ * follow</li>
+ * <li>extra literal length bytes, each 255 means another byte follows</li>
+ * <li>literals</li>
+ * <li>2 bytes match offset in Little Endian, absent for the last sequence</li>
+ * <li>extra match length bytes</li>
+ * </ul>
+ * It trades compression ratio for speed, there is no entropy coding at all.
+ */
+public class LzBlockCompressor implements BlockCompressor {
+
+  private static final int MIN_MATCH = 4;
+
+  private static final int MAX_OFFSET = 0xFFFF;
+
+  private static final int HASH_BITS = 14;
+
+  private static final int RUN_MASK = 15;
+
+  /** Position of last sequence seen for each hash, reused between blocks */
+  private final int[] hashTable = new int[1 << HASH_BITS];
+
+  @Override
+  public int compress(byte[] src, int srcLength, byte[] dst) {
+    Arrays.fill(hashTable, -1);
+
+    int anchor = 0;
+    int position = 0;
+    int output = 0;
+    int limit = srcLength - MIN_MATCH;
+
+    while (position <= limit) {
+      int sequence = readInt(src, position);
+      int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+      int reference = hashTable[hash];
+      hashTable[hash] = position;
+
+      if (reference < 0 || position - reference > MAX_OFFSET || readInt(src, reference) != sequence) {
+        position++;
+        continue;
+      }
+
+      int matchLength = MIN_MATCH;
+      while (position + matchLength < srcLength && src[reference + matchLength] == src[position + matchLength]) {
+        matchLength++;
+      }
+
+      output = writeSequence(src, anchor, position - anchor, position - reference, matchLength, dst, output);
+      if (output < 0) {
+        return -1;
+      }
+      position += matchLength;
+      anchor = position;
+    }
+
+    // Last sequence only contains literals
+    return writeSequence(src, anchor, srcLength - anchor, 0, 0, dst, output);
+  }
+
+  @Override
+  public void decompress(byte[] src, int srcLength, byte[] dst, int rawLength) throws IOException {
+    int input = 0;
+    int output = 0;
+
+    try {
+      while (input < srcLength) {
+        int token = src[input++] & 0xFF;
+
+        int literalLength = token >>> 4;
+        if (literalLength == RUN_MASK) {
+          int value;
+          do {
+            value = src[input++] & 0xFF;
+            literalLength += value;
+          } while (value == 0xFF);
+        }
+        System.arraycopy(src, input, dst, output, literalLength);
+        input += literalLength;
+        output += literalLength;
+
+        if (input >= srcLength) {
+          break;
+        }
+
+        int offset = (src[input] & 0xFF) | ((src[input + 1] & 0xFF) << 8);
+        input += 2;
+
+        int matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK) {
+          int value;
+          do {
+            value = src[input++] & 0xFF;
+            matchLength += value;
+          } while (value == 0xFF);
+        }
+        matchLength += MIN_MATCH;
+
+        int reference = output - offset;
+        if (offset == 0 || reference < 0) {
+          throw new IOException("Corrupted LZ block");
+        }
+        // Match may overlap with bytes being written, so it is copied byte by byte
+        for (int i = 0; i < matchLength; i++) {
+          dst[output++] = dst[reference + i];
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Corrupted LZ block", e);
+    }
+
+    if (output != rawLength) {
+      throw new IOException("Corrupted LZ block");
+    }
+  }
+
+  /**
+   * Write one sequence of literals and match
+   * 
+   * @return int position after the sequence, -1 if destination is too small
+   */
+  private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength,
+      byte[] dst, int output) {
+    int extraMatch = matchLength - MIN_MATCH;
+    // Token, literals, offset and both extended lengths in the worst case
+    int required = 1 + literalLength + literalLength / 0xFF + 1 + (matchLength > 0 ? 2 + extraMatch / 0xFF + 1 : 0);
+
+    if (output + required > dst.length) {
+      return -1;
+    }
+
+    int tokenPosition = output++;
+    int token = Math.min(literalLength, RUN_MASK) << 4;
+    output = writeLength(literalLength, dst, output);
+
+    System.arraycopy(src, literalStart, dst, output, literalLength);
+    output += literalLength;
+
+    if (matchLength > 0) {
+      token |= Math.min(extraMatch, RUN_MASK);
+      dst[output++] = (byte) offset;
+      dst[output++] = (byte) (offset >>> 8);
+      output = writeLength(extraMatch, dst, output);
+    }
+    dst[tokenPosition] = (byte) token;
+    return output;
+  }
+
+  /**
+   * Write extended part of a length whose token nibble is saturated
+   */
+  private static int writeLength(int length, byte[] dst, int output) {
+    if (length >= RUN_MASK) {
+      int remaining = length - RUN_MASK;
+      while (remaining >= 0xFF) {
+        dst[output++] = (byte) 0xFF;
+        remaining -= 0xFF;
+      }
+      dst[output++] = (byte) remaining;
+    }
+    return output;
+  }
+
+  private static int readInt(byte[] array, int position) {
+    return (array[position] & 0xFF) | ((array[position + 1] & 0xFF) << 8) | ((array[position + 2] & 0xFF) << 16)
+        | ((array[position + 3] & 0xFF) << 24);
+  }
+}
@@ -0,0 +1,58 @@
+package UtilitiesToolLib.common.jackson.serializer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+class EncryptionSerializerTest {
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  static class Address {
+    private String city;
+    private int zip;
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  static class Member {
+    @JsonSerialize(using = EncryptionSerializer.class)
+    @JsonDeserialize(using = DecryptionDeserializer.class)
+    private String name;
+
+    @JsonSerialize(using = EncryptionSerializer.class)
+    @JsonDeserialize(using = DecryptionDeserializer.class)
+    private Address address;
+
+    @JsonSerialize(using = EncryptionSerializer.class)
+    @JsonDeserialize(using = DecryptionDeserializer.class)
+    private List<Address> previousAddresses;
+  }
+
+  @Test
+  void annotatedFieldsRoundTrip() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    Member member = new Member("Member 1", new Address("Hanoi", 100000),
+        Arrays.asList(new Address("Hue", 530000), new Address("Da Nang", 550000)));
+
+    for (int i = 0; i < 3; i++) {
+      String json = mapper.writeValueAsString(member);
+      assertFalse(json.contains("Hanoi"));
+      assertEquals(member, mapper.readValue(json, Member.class));
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package UtilitiesToolLib.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.jupiter.api.Test;
+
+import UtilitiesToolLib.common.constant.CommonConstant;
+
+class EncryptionUtilTest {
+
+  @Test
+  void legacyTextIsStillDecrypted() throws Exception {
+    byte[] key = MessageDigest.getInstance("SHA-256")
+        .digest(CommonConstant.ENCRYPTION_PASSPHRASE.getBytes(StandardCharsets.UTF_8));
+    Cipher cipher = Cipher.getInstance("AES");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+    String legacy = Base64.encodeBase64String(cipher.doFinal("Member 1".getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals("Member 1", EncryptionUtil.decrypt(legacy));
+    String encrypted = EncryptionUtil.encrypt("Member 1");
+    assertTrue(GcmEncryptionEngine.isEnvelope(encrypted));
+    assertNotEquals(encrypted, EncryptionUtil.encrypt("Member 1"));
+    assertEquals("Member 1", EncryptionUtil.decrypt(encrypted));
+  }
+
+  @Test
+  void rotatedKeysDecryptOlderEnvelopes() throws Exception {
+    Map<String, String> passPhrases = new HashMap<String, String>();
+    passPhrases.put("k1", "first passphrase");
+    passPhrases.put("k2", "second passphrase");
+    GcmEncryptionEngine first = new GcmEncryptionEngine(new PassphraseKeyProvider(passPhrases, "k1"));
+    GcmEncryptionEngine second = new GcmEncryptionEngine(new PassphraseKeyProvider(passPhrases, "k2"));
+
+    String old = first.encrypt("Member 1");
+    assertEquals("Member 1", second.decrypt(old));
+    assertEquals("Member 2", first.decrypt(second.encrypt("Member 2")));
+
+    // Changed key id is detected by authentication
+    byte[] envelope = Base64.decodeBase64(old.substring(1));
+    envelope[3] = '2';
+    assertThrows(Exception.class, () -> second.decrypt(envelope));
+  }
+
+  @Test
+  void ciphersAreReusedAcrossThreads() {
+    List<String> decrypted = IntStream.range(0, 2000).parallel().mapToObj(i -> {
+      try {
+        return EncryptionUtil.decrypt(EncryptionUtil.encrypt("Value " + i));
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }).collect(Collectors.toList());
+
+    for (int i = 0; i < decrypted.size(); i++) {
+      assertEquals("Value " + i, decrypted.get(i));
+    }
+  }
+
+  @Test
+  void streamsAreEncryptedInChunks() throws Exception {
+    byte[] data = new byte[GcmEncryptionEngine.DEFAULT_CHUNK_SIZE * 3 + 17];
+    new Random(1).nextBytes(data);
+
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    EncryptionUtil.encrypt(new ByteArrayInputStream(data), encrypted);
+    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+    EncryptionUtil.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted);
+    assertArrayEquals(data, decrypted.toByteArray());
+
+    // Stream cut after a complete chunk is detected
+    byte[] truncated = Arrays.copyOf(encrypted.toByteArray(), encrypted.size() - 40);
+    assertThrows(Exception.class, () -> EncryptionUtil.decrypt(new ByteArrayInputStream(truncated),
+        new ByteArrayOutputStream()));
+
+    GcmEncryptionEngine engine = new GcmEncryptionEngine(new PassphraseKeyProvider("k1", "buffer passphrase"));
+    ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+    ByteBuffer envelope = engine.encrypt(direct);
+    assertTrue(envelope.isDirect());
+    ByteBuffer plain = engine.decrypt(envelope);
+    byte[] result = new byte[plain.remaining()];
+    plain.get(result);
+    assertArrayEquals(data, result);
+  }
+
+  @Test
+  void positionalReaderDecryptsOnlyRequestedChunk() throws Exception {
+    int chunkSize = GcmEncryptionEngine.DEFAULT_CHUNK_SIZE;
+    byte[] data = new byte[chunkSize * 3 + 517];
+    new Random(2).nextBytes(data);
+
+    GcmEncryptionEngine engine = new GcmEncryptionEngine(new PassphraseKeyProvider("k1", "reader passphrase"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (OutputStream encrypting = engine.encryptingStream(out)) {
+      encrypting.write(data);
+    }
+    byte[] encrypted = out.toByteArray();
+    List<Long> reads = new ArrayList<>();
+    DecryptingPositionalReader reader = engine.positionalReader((buffer, position) -> {
+      reads.add(position);
+      if (position >= encrypted.length) {
+        return -1;
+      }
+      int length = (int) Math.min(buffer.remaining(), encrypted.length - position);
+      buffer.put(encrypted, (int) position, length);
+      return length;
+    });
+
+    // Record crossing the boundary of the two last chunks
+    ByteBuffer record = ByteBuffer.allocate(100);
+    long position = chunkSize * 3L - 50;
+    while (record.hasRemaining()) {
+      position += reader.read(record, position);
+    }
+    assertArrayEquals(Arrays.copyOfRange(data, chunkSize * 3 - 50, chunkSize * 3 + 50), record.array());
+    // Only header and the two last chunks are read
+    assertTrue(reads.stream().allMatch(read -> read < 64 || read > chunkSize * 2L));
+    assertEquals(-1, reader.read(ByteBuffer.allocate(1), data.length));
+
+    // Changed chunk is rejected
+    encrypted[encrypted.length - 1] ^= 1;
+    assertThrows(IOException.class, () -> engine.positionalReader((buffer, pos) -> {
+      int length = (int) Math.min(buffer.remaining(), encrypted.length - pos);
+      buffer.put(encrypted, (int) pos, length);
+      return length;
+    }).read(ByteBuffer.allocate(1), chunkSize * 3L));
+  }
+
+  @Test
+  void batchesKeepOrderOnCustomPool() throws Exception {
+    List<String> plainTexts = IntStream.range(0, 5000).mapToObj(i -> i == 42 ? null : "Value " + i)
+        .collect(Collectors.toList());
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<String> encrypted = EncryptionUtil.encryptAll(plainTexts.stream(), pool);
+      assertNull(encrypted.get(42));
+      assertEquals(plainTexts, EncryptionUtil.decryptAll(encrypted, pool));
+
+      List<String> damaged = new ArrayList<>(encrypted);
+      damaged.set(7, GcmEncryptionEngine.TEXT_PREFIX + "AAAA");
+      assertThrows(Exception.class, () -> EncryptionUtil.decryptAll(damaged, pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.dropwizard.util.DataSize;
+
+class ConcurrentTemporaryStorageTest {
+
+  private static final int THREAD_COUNT = 8;
+
+  private static final int RECORDS_PER_THREAD = 10000;
+
+  @Test
+  void concurrentWritersAndReaders() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(256).toBytes())
+        .concurrencyLevel(4).randomAccess(true).build();
+    ConcurrentTemporaryStorage<String, Student> tempStorage =
+        new ConcurrentTemporaryStorage<String, Student>(config) {};
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      List<Callable<Void>> writers = new ArrayList<>();
+      for (int t = 0; t < THREAD_COUNT; t++) {
+        final int thread = t;
+        writers.add(() -> {
+          for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+            tempStorage.add(thread + "-" + i, new Student(thread + "-" + i, "Member " + i, thread));
+          }
+          return null;
+        });
+      }
+      for (Future<Void> future : executor.invokeAll(writers)) {
+        future.get();
+      }
+
+      List<Callable<Integer>> readers = new ArrayList<>();
+      for (int t = 0; t < THREAD_COUNT; t++) {
+        final int thread = t;
+        readers.add(() -> {
+          int found = 0;
+          // Each reader walks keys written by another thread
+          int owner = (thread + 1) % THREAD_COUNT;
+          for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+            Student student = tempStorage.get(owner + "-" + i);
+            if (student != null && student.getId().equals(owner + "-" + i) && student.getAge() == owner) {
+              found++;
+            }
+          }
+          return found;
+        });
+      }
+      for (Future<Integer> future : executor.invokeAll(readers)) {
+        assertEquals(RECORDS_PER_THREAD, future.get());
+      }
+      assertTrue(tempStorage.getStatistics().getMissCount() > 0);
+    } finally {
+      executor.shutdown();
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void durableConfigIsRejected(@TempDir File directory) {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().directory(directory).durable(true).build();
+    assertThrows(IllegalArgumentException.class, () -> new ConcurrentTemporaryStorage<String, String>(config) {});
+  }
+}
@@ -0,0 +1,106 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import UtilitiesToolLib.module.TemporaryStorage.compression.CompressionType;
+import io.dropwizard.util.DataSize;
+
+class SegmentLogTest {
+
+  @Test
+  void compactionKeepsLiveRegionsReadable() throws Exception {
+    SegmentLog segmentLog = new SegmentLog(4096, 0.5);
+    List<SegmentRegion> regions = new ArrayList<SegmentRegion>();
+    try {
+      for (int i = 0; i < 40; i++) {
+        final byte[] data = regionData(i);
+        regions.add(segmentLog.append(out -> out.write(data)));
+      }
+      int segmentCount = segmentLog.getSegmentCount();
+      // Release most regions, leaving every tenth one alive
+      for (int i = 0; i < 40; i++) {
+        if (i % 10 != 0) {
+          segmentLog.release(regions.get(i));
+        }
+      }
+      long deadline = System.currentTimeMillis() + 10000;
+      while (segmentLog.getSegmentCount() > 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(true, segmentLog.getSegmentCount() < segmentCount);
+
+      for (int i = 0; i < 40; i += 10) {
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        segmentLog.readFully(regions.get(i), buffer, 0);
+        assertArrayEquals(regionData(i), buffer.array());
+        try (InputStream in = segmentLog.openInputStream(regions.get(i))) {
+          assertArrayEquals(regionData(i), in.readAllBytes());
+        }
+      }
+    } finally {
+      segmentLog.close();
+    }
+    assertEquals(0, segmentLog.getSegmentCount());
+  }
+
+  @Test
+  void storageReadsPartitionsFromSegments() throws Exception {
+    TemporaryStorageConfig base = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes())
+        .segmentLog(true).segmentSize(DataSize.kilobytes(64).toBytes()).build();
+    TemporaryStorageConfig[] configs = new TemporaryStorageConfig[] {base, base.toBuilder().randomAccess(true).build(),
+        base.toBuilder().memoryMapped(true).build(),
+        base.toBuilder().randomAccess(true).compression(CompressionType.LZ).build()};
+
+    for (TemporaryStorageConfig config : configs) {
+      TemporaryStorage<String, String> tempStorage = new TemporaryStorage<String, String>(config) {};
+      try {
+        for (int round = 0; round < 3; round++) {
+          for (int i = 0; i < 2000; i++) {
+            tempStorage.add("key" + i, "Value " + round + " " + i);
+          }
+        }
+        for (int i = 0; i < 2000; i++) {
+          assertEquals("Value 2 " + i, tempStorage.get("key" + i));
+        }
+      } finally {
+        tempStorage.close();
+      }
+    }
+  }
+
+  @Test
+  void segmentsAreWrittenIntoConfiguredDirectory(@TempDir File directory) throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes())
+        .segmentLog(true).directory(directory).build();
+    TemporaryStorage<String, String> tempStorage = new TemporaryStorage<String, String>(config) {};
+    try {
+      for (int i = 0; i < 2000; i++) {
+        tempStorage.add("key" + i, "Value " + i);
+      }
+      assertTrue(directory.list((dir, name) -> name.endsWith(".tsl")).length > 0);
+      assertEquals("Value 0", tempStorage.get("key0"));
+    } finally {
+      tempStorage.close();
+    }
+    assertEquals(0, directory.list().length);
+  }
+
+  private static byte[] regionData(int no) {
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (no + i);
+    }
+    return data;
+  }
+}
@@ -0,0 +1,18 @@
+package UtilitiesToolLib.module.TemporaryStorage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class Student {
+  private String id;
+  private String name;
+  private int age;
+
+  public String toString() {
+    return id + ":" + name + ":" + String.valueOf(age);
+  }
+}
@@ -4,31 +4,32 @@
 package UtilitiesToolLib.module.TemporaryStorage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import UtilitiesToolLib.common.util.PassphraseKeyProvider;
+import UtilitiesToolLib.module.TemporaryStorage.codec.Codecs;
+import UtilitiesToolLib.module.TemporaryStorage.compression.CompressionType;
 import io.dropwizard.util.DataSize;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-class Student {
-  private String id;
-  private String name;
-  private int age;
-
-  public String toString() {
-    return id + ":" + name + ":" + String.valueOf(age);
-  }
-}
 
 class TemporaryStorageTest {
   @Test
@@ -56,4 +57,820 @@ class TemporaryStorageTest {
       assertEquals(beforeList.get(i).toString(), afterList.get(i).toString());
     }
   }
+
+  @Test
+  void randomAccessReadsPersistedRecords() throws Exception {
+    TemporaryStorageConfig config =
+        TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(64).toBytes()).randomAccess(true).build();
+    TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+    List<String> keys = new ArrayList<String>();
+    List<Student> beforeList = new ArrayList<Student>();
+    try {
+      for (int i = 0; i < 10000; i++) {
+        Student target = new Student(("0000" + i), "Member " + i, 18);
+        String key = UUID.randomUUID().toString();
+        tempStorage.add(key, target);
+        keys.add(key);
+        beforeList.add(target);
+      }
+      List<Student> afterList = keys.stream().map(key -> tempStorage.get(key)).collect(Collectors.toList());
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(beforeList.get(i).toString(), afterList.get(i).toString());
+      }
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void residentPartitionsAreNotReloaded() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(64).toBytes())
+        .maxResidentPartitions(Integer.MAX_VALUE).build();
+    TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+    List<String> keys = new ArrayList<String>();
+    try {
+      for (int i = 0; i < 10000; i++) {
+        String key = UUID.randomUUID().toString();
+        tempStorage.add(key, new Student(("0000" + i), "Member " + i, 18));
+        keys.add(key);
+      }
+      for (int round = 0; round < 2; round++) {
+        for (int i = 0; i < 10000; i++) {
+          assertEquals("0000" + i, tempStorage.get(keys.get(i)).getId());
+        }
+      }
+      TemporaryStorageStatistics statistics = tempStorage.getStatistics();
+      assertTrue(statistics.getMissCount() > 0);
+      assertTrue(statistics.getMissCount() < 100);
+      assertEquals(0, statistics.getEvictionCount());
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void integerKeysAreIndexedAcrossPartitions() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes()).build();
+    TemporaryStorage<Integer, Student> tempStorage = new TemporaryStorage<Integer, Student>(config) {};
+    try {
+      for (int i = 0; i < 5000; i++) {
+        tempStorage.add(i, new Student(("0000" + i), "Member " + i, 18));
+      }
+      // Latest value wins when key is added again into another partition
+      tempStorage.add(0, new Student("00000", "Member 0", 20));
+
+      assertTrue(tempStorage.containsKey(4999));
+      assertFalse(tempStorage.containsKey(5000));
+      assertEquals(20, tempStorage.get(0).getAge());
+      for (int i = 1; i < 5000; i++) {
+        assertEquals("0000" + i, tempStorage.get(i).getId());
+      }
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void bloomFilterAnswersPersistedKeys() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes())
+        .bloomFilter(true).randomAccess(true).build();
+    TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+    List<String> keys = new ArrayList<String>();
+    try {
+      for (int i = 0; i < 2000; i++) {
+        String key = UUID.randomUUID().toString();
+        tempStorage.add(key, new Student(("0000" + i), "Member " + i, 18));
+        keys.add(key);
+      }
+      assertFalse(tempStorage.containsKey(UUID.randomUUID().toString()));
+      assertNull(tempStorage.get(UUID.randomUUID().toString()));
+      for (int i = 0; i < 2000; i++) {
+        assertTrue(tempStorage.containsKey(keys.get(i)));
+        assertEquals("0000" + i, tempStorage.get(keys.get(i)).getId());
+      }
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void asyncSpillKeepsDataReadable() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(64).toBytes())
+        .asyncSpill(true).maxPendingSpills(1).build();
+    TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+    List<String> keys = new ArrayList<String>();
+    try {
+      for (int i = 0; i < 20000; i++) {
+        String key = UUID.randomUUID().toString();
+        tempStorage.add(key, new Student(("0000" + i), "Member " + i, 18));
+        keys.add(key);
+        // Read back recently spilled data while it may still be written in background
+        if (i % 1000 == 999) {
+          assertEquals("0000" + (i - 500), tempStorage.get(keys.get(i - 500)).getId());
+        }
+      }
+      for (int i = 0; i < 20000; i++) {
+        assertEquals("0000" + i, tempStorage.get(keys.get(i)).getId());
+      }
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void pendingWriteChangesPartitionOnlyWhenCompleted() throws Exception {
+    TemporaryPartition<String, String> partition = new TemporaryPartition<String, String>(
+        TemporaryStorageConfig.builder().build(), false, String.class, String.class);
+    try {
+      for (int i = 0; i < 100; i++) {
+        partition.add("key" + i, "Value " + i);
+      }
+      TemporaryPartition<String, String>.PendingWrite pending = partition.prepareWrite();
+      partition.writePending(pending);
+
+      // Owner still sees every record as not written, so superseding them can not release partition early
+      assertFalse(partition.isPersisted());
+      assertEquals(100, partition.getRecordCount());
+      assertFalse(partition.markSuperseded(0));
+      assertEquals(partition.getSize(), partition.getLiveSize());
+
+      partition.completeWrite(pending);
+      assertTrue(partition.isPersisted());
+      assertFalse(partition.isDirty());
+      assertEquals(100, partition.getRecordCount());
+      assertEquals(partition.getSize() - "Value 0".length(), partition.getLiveSize());
+      assertEquals("Value 99", partition.read(99));
+    } finally {
+      partition.close();
+    }
+  }
+
+  @Test
+  void binaryCodecsRoundTrip() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes())
+        .keyCodec(Codecs.LONG).valueCodec(Codecs.smile(Student.class)).build();
+    TemporaryStorage<Long, Student> tempStorage = new TemporaryStorage<Long, Student>(config) {};
+    try {
+      for (long i = 0; i < 5000; i++) {
+        tempStorage.add(i, new Student(("0000" + i), "Member " + i, 18));
+      }
+      for (long i = 0; i < 5000; i++) {
+        assertEquals("0000" + i, tempStorage.get(i).getId());
+      }
+      // Null is rejected instead of failing inside codec
+      assertThrows(IllegalArgumentException.class, () -> tempStorage.add(1L, null));
+      assertEquals("00001", tempStorage.get(1L).getId());
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void reloadStreamsRecordsLargerThanScratchBuffer() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().build();
+    TemporaryPartition<String, String> partition =
+        new TemporaryPartition<String, String>(config, false, String.class, String.class);
+    try {
+      // Keys and values alternate between small ones and ones larger than the scratch buffer
+      Map<String, String> data = new LinkedHashMap<String, String>();
+      for (int i = 0; i < 50; i++) {
+        String key = "key" + i + "-".repeat(i % 5 == 4 ? 10000 + i : 0);
+        String value = String.valueOf((char) ('a' + i % 26)).repeat(i % 3 == 1 ? 20000 + i * 100 : 10);
+        data.put(key, value);
+        partition.add(key, value);
+      }
+      partition.save();
+
+      partition.load();
+      assertEquals(data, partition.getDataMap());
+      partition.unload();
+
+      Map<String, String> walked = new LinkedHashMap<String, String>();
+      partition.forEachRecord((ordinal, key, value) -> walked.put(key, value));
+      assertEquals(data, walked);
+
+      // Key table is scanned in place when partition does not retain keys
+      int ordinal = 0;
+      for (String key : data.keySet()) {
+        assertEquals(ordinal++, partition.findOrdinal(key));
+      }
+      assertEquals(-1, partition.findOrdinal("missing"));
+    } finally {
+      partition.close();
+    }
+  }
+
+  @Test
+  void memoryMappedReadsDoNotReload() throws Exception {
+    TemporaryStorageConfig config =
+        TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(64).toBytes()).memoryMapped(true).build();
+    TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+    List<String> keys = new ArrayList<String>();
+    try {
+      for (int i = 0; i < 10000; i++) {
+        String key = UUID.randomUUID().toString();
+        tempStorage.add(key, new Student(("0000" + i), "Member " + i, 18));
+        keys.add(key);
+      }
+      for (int i = 0; i < 10000; i++) {
+        assertEquals("0000" + i, tempStorage.get(keys.get(i)).getId());
+      }
+      assertEquals(0, tempStorage.getStatistics().getEvictionCount());
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void blockCompressedPartitionsRoundTrip() throws Exception {
+    for (CompressionType compression : new CompressionType[] {CompressionType.DEFLATE, CompressionType.LZ}) {
+      for (boolean randomAccess : new boolean[] {true, false}) {
+        TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(64).toBytes())
+            .compression(compression).compressionBlockSize(4096).randomAccess(randomAccess).build();
+        TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+        try {
+          for (int i = 0; i < 5000; i++) {
+            tempStorage.add("key" + i, new Student(("0000" + i), "Member " + i, 18));
+          }
+          for (int i = 4999; i >= 0; i--) {
+            assertEquals("Member " + i, tempStorage.get("key" + i).getName());
+          }
+        } finally {
+          tempStorage.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  void reloadedPartitionAppendsOnlyNewRecords() throws Exception {
+    TemporaryStorageConfig base = TemporaryStorageConfig.builder().build();
+    TemporaryStorageConfig[] configs = new TemporaryStorageConfig[] {base, base.toBuilder().compress(true).build(),
+        base.toBuilder().compression(CompressionType.LZ).build(), base.toBuilder().memoryMapped(true).build()};
+
+    for (TemporaryStorageConfig config : configs) {
+      TemporaryPartition<String, String> partition =
+          new TemporaryPartition<String, String>(config, true, String.class, String.class);
+      try {
+        for (int i = 0; i < 1000; i++) {
+          partition.add("key" + i, "Value " + i);
+        }
+        partition.save();
+        long fileSize = partition.getStorageFile().length();
+
+        // Clean partition is evicted without writing
+        partition.load();
+        assertFalse(partition.isDirty());
+        partition.save();
+        assertEquals(fileSize, partition.getStorageFile().length());
+
+        partition.load();
+        partition.add("key0", "Updated 0");
+        partition.add("key1000", "Value 1000");
+        assertTrue(partition.isDirty());
+        partition.save();
+        assertTrue(partition.getStorageFile().length() < fileSize * 2);
+
+        assertEquals("Updated 0", partition.read("key0"));
+        assertEquals("Value 999", partition.read("key999"));
+        assertEquals("Value 1000", partition.read("key1000"));
+        partition.load();
+        assertEquals("Updated 0", partition.get("key0"));
+        assertEquals("Value 1000", partition.get("key1000"));
+      } finally {
+        partition.close();
+      }
+    }
+  }
+
+  @Test
+  void bulkReadsWalkPartitionsOnce() throws Exception {
+    TemporaryStorageConfig base = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes()).build();
+
+    for (TemporaryStorageConfig config : new TemporaryStorageConfig[] {base,
+        base.toBuilder().bloomFilter(true).build()}) {
+      TemporaryStorage<String, String> tempStorage = new TemporaryStorage<String, String>(config) {};
+      try {
+        Map<String, String> data = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 3000; i++) {
+          data.put("key" + i, "Value " + i);
+        }
+        tempStorage.addAll(data);
+        // Replace part of records by newer partitions
+        for (int i = 0; i < 500; i++) {
+          tempStorage.add("key" + i, "Updated " + i);
+        }
+
+        List<String> keys = new ArrayList<String>(data.keySet());
+        Collections.shuffle(keys);
+        keys.add("missing");
+        long misses = tempStorage.getStatistics().getMissCount();
+        Map<String, String> result = tempStorage.getAll(keys);
+        assertEquals(3000, result.size());
+        // Each persisted partition is loaded once whatever the order of keys
+        assertTrue(tempStorage.getStatistics().getMissCount() - misses < 20);
+        assertEquals("Updated 1", result.get("key1"));
+        assertEquals("Value 2999", result.get("key2999"));
+        assertEquals(keys.get(0), result.keySet().iterator().next());
+
+        Map<String, String> walked = new HashMap<String, String>();
+        tempStorage.forEach((key, value) -> assertNull(walked.put(key, value)));
+        assertEquals(3000, walked.size());
+        assertEquals("Updated 499", walked.get("key499"));
+        assertEquals("Value 500", walked.get("key500"));
+
+        assertEquals(walked, tempStorage.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+      } finally {
+        tempStorage.close();
+      }
+    }
+  }
+
+  @Test
+  void upsertReplacesWithoutPreviousData() throws Exception {
+    TemporaryStorageConfig base = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes()).build();
+
+    for (TemporaryStorageConfig config : new TemporaryStorageConfig[] {base,
+        base.toBuilder().bloomFilter(true).build()}) {
+      TemporaryStorage<Integer, String> tempStorage = new TemporaryStorage<Integer, String>(config) {};
+      try {
+        for (int i = 0; i < 3000; i++) {
+          tempStorage.add(i, "Value " + i);
+        }
+        tempStorage.remove(7);
+
+        assertTrue(tempStorage.upsert(5, "Updated 5"));
+        assertTrue(tempStorage.upsert(2999, "Updated 2999"));
+        assertFalse(tempStorage.upsert(7, "Value again"));
+        assertFalse(tempStorage.upsert(3000, "Value 3000"));
+        assertEquals("Updated 5", tempStorage.get(5));
+        assertEquals("Updated 2999", tempStorage.get(2999));
+        assertEquals("Value again", tempStorage.get(7));
+        assertEquals(3001, tempStorage.stream().count());
+      } finally {
+        tempStorage.close();
+      }
+    }
+  }
+
+  @Test
+  void removeAndReplaceTrackLiveData() throws Exception {
+    TemporaryStorageConfig base = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes()).build();
+
+    for (TemporaryStorageConfig config : new TemporaryStorageConfig[] {base,
+        base.toBuilder().bloomFilter(true).build(), base.toBuilder().randomAccess(true).build(),
+        base.toBuilder().offHeap(true).build()}) {
+      TemporaryStorage<Integer, String> tempStorage = new TemporaryStorage<Integer, String>(config) {};
+      try {
+        for (int i = 0; i < 3000; i++) {
+          tempStorage.add(i, String.format("Value %06d", i));
+        }
+        long size = tempStorage.getSize();
+        assertEquals(3000L * 12, size);
+
+        // Removed keys of persisted and active partitions
+        assertTrue(tempStorage.remove(5));
+        assertTrue(tempStorage.remove(2999));
+        assertFalse(tempStorage.remove(5));
+        assertFalse(tempStorage.containsKey(5));
+        assertNull(tempStorage.get(2999));
+        if (!config.isBloomFilter()) {
+          assertEquals(size - 24, tempStorage.getSize());
+        }
+
+        // Key removed from the active partition comes back at the same position
+        tempStorage.add(2999, "Value again");
+        assertEquals("Value again", tempStorage.get(2999));
+        assertEquals("Value 000006", tempStorage.put(6, "Updated 6"));
+        assertEquals("Updated 6", tempStorage.get(6));
+
+        // Replacing most records compacts old partitions
+        for (int i = 0; i < 2000; i++) {
+          if (i != 5) {
+            tempStorage.add(i, String.format("Update %06d", i));
+          }
+        }
+        if (!config.isBloomFilter()) {
+          // Removed two records, added one of 11 bytes, then one more byte for each update
+          assertEquals(size - 24 + 11 + 1998 + 1, tempStorage.getSize());
+        }
+        assertNull(tempStorage.get(5));
+        assertEquals("Update 001999", tempStorage.get(1999));
+        assertEquals("Value 002000", tempStorage.get(2000));
+
+        Map<Integer, String> walked = new HashMap<Integer, String>();
+        tempStorage.forEach((key, value) -> walked.put(key, value));
+        assertEquals(2999, walked.size());
+        assertFalse(walked.containsKey(5));
+      } finally {
+        tempStorage.close();
+      }
+    }
+  }
+
+  @Test
+  void memoryPressureSpillsPartitions() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().spillPolicy(SpillPolicy.MEMORY_PRESSURE)
+        .memoryPressureThreshold(0.5).minPressureSpillSize(4096).maxResidentPartitions(10).build();
+    MemoryPressureMonitor monitor = new MemoryPressureMonitor();
+    TemporaryStorage<Integer, String> tempStorage =
+        new TemporaryStorage<Integer, String>(config, Integer.class, String.class, monitor) {};
+    try {
+      // Small active partition stays in memory under pressure
+      for (int i = 0; i < 10; i++) {
+        tempStorage.add(i, "Value " + i);
+      }
+      monitor.record(0.9);
+      tempStorage.add(10, "Value 10");
+      assertEquals("Value 0", tempStorage.get(0));
+      assertEquals(0, tempStorage.getStatistics().getMissCount());
+
+      // Without limit size nothing is spilled until memory pressure is reported
+      for (int i = 11; i < 1000; i++) {
+        tempStorage.add(i, "Value " + i);
+      }
+      monitor.record(0.9);
+      tempStorage.add(1000, "Value 1000");
+
+      long missCount = tempStorage.getStatistics().getMissCount();
+      assertEquals("Value 0", tempStorage.get(0));
+      assertEquals(missCount + 1, tempStorage.getStatistics().getMissCount());
+      assertEquals("Value 1000", tempStorage.get(1000));
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void memorySizeCountsEncodedCopiesUntilWritten() throws Exception {
+    TemporaryStorageConfig base = TemporaryStorageConfig.builder().build();
+
+    for (TemporaryStorageConfig config : new TemporaryStorageConfig[] {base, base.toBuilder().offHeap(true).build()}) {
+      TemporaryPartition<String, String> partition =
+          new TemporaryPartition<String, String>(config, true, String.class, String.class);
+      try {
+        for (int i = 0; i < 100; i++) {
+          partition.add("key" + i, "Value " + i);
+        }
+        partition.add("key0", "Updated 0");
+        partition.remove("key1");
+        long size = partition.getSize();
+        // Off-heap records have no decoded copy on heap
+        assertEquals(config.isOffHeap() ? size : 2 * size, partition.getMemorySize());
+
+        partition.save();
+        partition.load();
+        assertEquals(size, partition.getMemorySize());
+      } finally {
+        partition.close();
+      }
+    }
+  }
+
+  @Test
+  void offHeapPartitionKeepsEncodedRecords() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().offHeap(true).offHeapChunkSize(1024).build();
+    TemporaryPartition<String, Student> partition =
+        new TemporaryPartition<String, Student>(config, true, String.class, Student.class) {};
+    try {
+      for (int i = 0; i < 500; i++) {
+        partition.add("key" + i, new Student("0000" + i, "Member " + i, 18));
+      }
+      // Replaced values are dropped when arena is compacted
+      for (int i = 0; i < 500; i++) {
+        partition.add("key" + i, new Student("0000" + i, "Member " + i, 20));
+      }
+      partition.remove("key3");
+      assertEquals(499, partition.getDataMap().size());
+      assertEquals(20, partition.get("key7").getAge());
+      assertNull(partition.get("key3"));
+      assertEquals("key0", partition.getDataMap().keySet().iterator().next());
+
+      partition.save();
+      assertTrue(partition.getDataMap().isEmpty());
+      partition.add("key500", new Student("0000500", "Member 500", 18));
+      partition.load();
+      assertEquals(500, partition.getDataMap().size());
+      assertEquals("Member 499", partition.get("key499").getName());
+      assertEquals("Member 500", partition.get("key500").getName());
+      assertFalse(partition.containsKey("key3"));
+    } finally {
+      partition.close();
+    }
+  }
+
+  @Test
+  void offHeapCompactionIgnoresEntryBeingAdded() {
+    OffHeapMap<String, byte[]> map = new OffHeapMap<>(String.class, Codecs.BYTE_ARRAY, 16);
+    for (int i = 0; i < 10; i++) {
+      map.put("key" + i, new byte[40]);
+    }
+    map.clear();
+    for (int i = 0; i < 8; i++) {
+      map.put("key" + i, new byte[] {(byte) i, 0, 0, 0});
+    }
+    for (int i = 0; i < 7; i++) {
+      map.remove("key" + i);
+    }
+    // Arena is compacted while new key is added, slots left by cleared entries must not be copied
+    map.put("key8", new byte[] {8, 0, 0, 0});
+
+    assertEquals(2, map.size());
+    assertEquals(7, map.get("key7")[0]);
+    assertEquals(8, map.get("key8")[0]);
+  }
+
+  @Test
+  void byteArrayValueIsCopiedWhenAdded() throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(1).toBytes()).build();
+    TemporaryStorage<Integer, byte[]> tempStorage =
+        new TemporaryStorage<Integer, byte[]>(config, Integer.class, byte[].class) {};
+    try {
+      byte[] value = new byte[] {1, 2, 3};
+      tempStorage.add(0, value);
+      value[0] = 9;
+      for (int i = 1; i < 1000; i++) {
+        tempStorage.add(i, new byte[] {(byte) i, 0, 0});
+      }
+      assertEquals(1, tempStorage.get(0)[0]);
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void integerKeysUseFixedWidthCodec() throws Exception {
+    assertTrue(Codecs.forClass(Long.class) == Codecs.LONG);
+    assertTrue(Codecs.forClass(Integer.class) == Codecs.INTEGER);
+
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(16).toBytes()).build();
+    TemporaryStorage<Long, String> longStorage =
+        new TemporaryStorage<Long, String>(config, Long.class, String.class) {};
+    TemporaryStorage<Integer, String> intStorage =
+        new TemporaryStorage<Integer, String>(config, Integer.class, String.class) {};
+    try {
+      for (int i = 0; i < 5000; i++) {
+        longStorage.add(Long.MAX_VALUE - i, "Value " + i);
+        intStorage.add(-i, "Value " + i);
+      }
+      assertEquals("Value 0", longStorage.get(Long.MAX_VALUE));
+      assertEquals("Value 4999", intStorage.get(-4999));
+      assertTrue(longStorage.remove(Long.MAX_VALUE - 7));
+      assertFalse(longStorage.containsKey(Long.MAX_VALUE - 7));
+      assertEquals("Value 8", intStorage.put(-8, "Updated 8"));
+      assertEquals("Updated 8", intStorage.get(-8));
+    } finally {
+      longStorage.close();
+      intStorage.close();
+    }
+  }
+
+  @Test
+  void sortedModeMergesPartitionsInKeyOrder() throws Exception {
+    TemporaryStorageConfig base =
+        TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(8).toBytes()).sorted(true).build();
+
+    for (TemporaryStorageConfig config : new TemporaryStorageConfig[] {base, base.toBuilder().bloomFilter(true).build(),
+        base.toBuilder().asyncSpill(true).keyComparator(Collections.reverseOrder()).build()}) {
+      TemporaryStorage<Integer, String> tempStorage = new TemporaryStorage<Integer, String>(config) {};
+      List<Integer> keys = new ArrayList<Integer>();
+      for (int i = 0; i < 5000; i++) {
+        keys.add(i);
+      }
+      Collections.shuffle(keys);
+      try {
+        for (Integer key : keys) {
+          tempStorage.add(key, "Value " + key);
+        }
+        tempStorage.remove(10);
+        tempStorage.add(20, "Updated 20");
+        assertEquals("Value 30", tempStorage.get(30));
+
+        List<Integer> sortedKeys = new ArrayList<Integer>();
+        try (Stream<Map.Entry<Integer, String>> stream = tempStorage.sortedStream()) {
+          stream.forEach(entry -> {
+            sortedKeys.add(entry.getKey());
+            if (entry.getKey() == 20) {
+              assertEquals("Updated 20", entry.getValue());
+            } else {
+              assertEquals("Value " + entry.getKey(), entry.getValue());
+            }
+          });
+        }
+
+        List<Integer> expected = new ArrayList<Integer>(keys);
+        expected.remove(Integer.valueOf(10));
+        expected.sort(config.getKeyComparator() != null ? Collections.reverseOrder() : null);
+        assertEquals(expected, sortedKeys);
+      } finally {
+        tempStorage.close();
+      }
+    }
+  }
+
+  @Test
+  void compactionMovesBoundedRecordsPerCall(@TempDir File directory) throws Exception {
+    TemporaryStorageConfig config =
+        TemporaryStorageConfig.builder().limitSize(1024).directory(directory).compactionBatchSize(4).build();
+    TemporaryStorage<Integer, String> tempStorage =
+        new TemporaryStorage<Integer, String>(config, Integer.class, String.class) {};
+    try {
+      // Records added before the first storage file appears form the first partition
+      int firstCount = 0;
+      File firstFile = null;
+      for (int i = 0; i < 1000; i++) {
+        tempStorage.add(i, String.format("Value %06d", i));
+        if (firstFile == null && directory.listFiles().length > 0) {
+          firstCount = i;
+          firstFile = directory.listFiles()[0];
+        }
+      }
+
+      // Replacing more than half of the first partition queues it, a single call does not move all its records
+      for (int i = 0; i <= firstCount / 2; i++) {
+        tempStorage.add(i, "Update " + i);
+      }
+      assertTrue(firstFile.exists());
+
+      int calls = 0;
+      while (firstFile.exists() && calls < 1000) {
+        tempStorage.add(-1 - calls, "Other");
+        calls++;
+      }
+      assertFalse(firstFile.exists());
+      assertTrue(calls >= firstCount / 4 - 2);
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i <= firstCount / 2 ? "Update " + i : String.format("Value %06d", i), tempStorage.get(i));
+      }
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void durableStorageReopensFromCheckpoint(@TempDir File directory) throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(8).toBytes())
+        .compression(CompressionType.LZ).directory(directory).durable(true).build();
+
+    TemporaryStorage<Integer, String> tempStorage = TemporaryStorage.open(config, Integer.class, String.class);
+    for (int i = 0; i < 3000; i++) {
+      tempStorage.add(i, "Value " + i);
+    }
+    tempStorage.remove(7);
+    tempStorage.checkpoint();
+
+    // Records added after checkpoint are lost when storage is not closed
+    for (int i = 3000; i < 4000; i++) {
+      tempStorage.add(i, "Lost " + i);
+    }
+    long fileCount = directory.list().length;
+
+    TemporaryStorage<Integer, String> reopened = TemporaryStorage.open(config, Integer.class, String.class);
+    try {
+      assertTrue(directory.list().length < fileCount);
+      assertEquals("Value 0", reopened.get(0));
+      assertEquals("Value 2999", reopened.get(2999));
+      assertNull(reopened.get(7));
+      assertNull(reopened.get(3500));
+      reopened.add(3000, "Value 3000");
+    } finally {
+      reopened.close();
+    }
+
+    TemporaryStorage<Integer, String> closed = TemporaryStorage.open(config, Integer.class, String.class);
+    try {
+      assertEquals("Value 3000", closed.get(3000));
+      assertEquals(3000, closed.stream().count());
+    } finally {
+      closed.close();
+    }
+  }
+
+  @Test
+  void durableStorageKeepsBlockSizeAndCodecs(@TempDir File directory) throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(8).toBytes())
+        .compression(CompressionType.LZ).compressionBlockSize(1024).directory(directory).durable(true).build();
+
+    TemporaryStorage<Integer, String> tempStorage = TemporaryStorage.open(config, Integer.class, String.class);
+    for (int i = 0; i < 3000; i++) {
+      tempStorage.add(i, "Value " + i);
+    }
+    tempStorage.close();
+
+    // Records are located with the block size they were written with
+    TemporaryStorage<Integer, String> reopened = TemporaryStorage.open(
+        config.toBuilder().compressionBlockSize(4096).randomAccess(true).build(), Integer.class, String.class);
+    try {
+      for (int i = 0; i < 3000; i += 13) {
+        assertEquals("Value " + i, reopened.get(i));
+      }
+    } finally {
+      reopened.close();
+    }
+
+    // Data written by another codec is rejected
+    TemporaryStorageConfig smile = config.toBuilder().valueCodec(Codecs.smile(String.class)).build();
+    assertThrows(IOException.class, () -> TemporaryStorage.open(smile, Integer.class, String.class));
+  }
+
+  @Test
+  void removedKeysOfWrittenPartitionLeaveIndex(@TempDir File directory) throws Exception {
+    TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.megabytes(1).toBytes())
+        .directory(directory).durable(true).build();
+    File manifest = new File(directory, StorageManifest.FILE_NAME);
+
+    TemporaryStorage<Integer, String> tempStorage = TemporaryStorage.open(config, Integer.class, String.class);
+    try {
+      for (int i = 0; i < 1000; i++) {
+        tempStorage.add(i, "Value " + i);
+      }
+      tempStorage.checkpoint();
+      long size = manifest.length();
+
+      // Keys added and removed inside the active partition are not recorded once it is written
+      for (int i = 1000; i < 2000; i++) {
+        tempStorage.add(i, "Value " + i);
+        assertTrue(tempStorage.remove(i));
+      }
+      tempStorage.checkpoint();
+      // Only 12 bytes of location of each written record are added, a key would add at least 16 bytes more
+      assertTrue(manifest.length() - size < 1000 * 13);
+
+      tempStorage.add(1500, "Value again");
+      assertEquals("Value again", tempStorage.get(1500));
+      assertNull(tempStorage.get(1501));
+      assertEquals(1001, tempStorage.stream().count());
+    } finally {
+      tempStorage.close();
+    }
+  }
+
+  @Test
+  void durableStorageKeepsEncryptionOfPartitions(@TempDir File directory) throws Exception {
+    TemporaryStorageConfig plain = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(8).toBytes())
+        .directory(new File(directory, "plain")).durable(true).build();
+    TemporaryStorageConfig encrypted = plain.toBuilder().directory(new File(directory, "encrypted"))
+        .encryptionKeys(new PassphraseKeyProvider("k1", "storage passphrase")).build();
+
+    for (TemporaryStorageConfig config : new TemporaryStorageConfig[] {plain, encrypted}) {
+      TemporaryStorage<Integer, String> tempStorage = TemporaryStorage.open(config, Integer.class, String.class);
+      for (int i = 0; i < 3000; i++) {
+        tempStorage.add(i, "Value " + i);
+      }
+      tempStorage.close();
+    }
+
+    TemporaryStorage<Integer, String> reopened = TemporaryStorage.open(encrypted, Integer.class, String.class);
+    try {
+      assertEquals("Value 2000", reopened.get(2000));
+    } finally {
+      reopened.close();
+    }
+
+    // Encryption of stored partitions must match configuration and its keys
+    TemporaryStorageConfig withoutKeys = encrypted.toBuilder().encryptionKeys(null).build();
+    TemporaryStorageConfig otherKey =
+        encrypted.toBuilder().encryptionKeys(new PassphraseKeyProvider("k2", "storage passphrase")).build();
+    TemporaryStorageConfig withKeys = plain.toBuilder().encryptionKeys(encrypted.getEncryptionKeys()).build();
+    assertThrows(IOException.class, () -> TemporaryStorage.open(withoutKeys, Integer.class, String.class));
+    assertThrows(IOException.class, () -> TemporaryStorage.open(otherKey, Integer.class, String.class));
+    assertThrows(IOException.class, () -> TemporaryStorage.open(withKeys, Integer.class, String.class));
+  }
+
+  @Test
+  void encryptedPartitionsAreUnreadableAtRest() throws Exception {
+    for (CompressionType compression : new CompressionType[] {CompressionType.NONE, CompressionType.GZIP,
+        CompressionType.LZ}) {
+      TemporaryStorageConfig config = TemporaryStorageConfig.builder().limitSize(DataSize.kilobytes(64).toBytes())
+          .compression(compression).randomAccess(true).memoryMapped(true)
+          .encryptionKeys(new PassphraseKeyProvider("k1", "storage passphrase")).build();
+      TemporaryStorage<String, Student> tempStorage = new TemporaryStorage<String, Student>(config) {};
+      try {
+        for (int i = 0; i < 5000; i++) {
+          tempStorage.add("key" + i, new Student(("0000" + i), "Member " + i, 18));
+        }
+        for (int i = 4999; i >= 0; i -= 7) {
+          assertEquals("Member " + i, tempStorage.get("key" + i).getName());
+        }
+        assertEquals(5000, tempStorage.stream().count());
+      } finally {
+        tempStorage.close();
+      }
+
+      TemporaryPartition<String, String> partition =
+          new TemporaryPartition<String, String>(config, true, String.class, String.class);
+      try {
+        for (int i = 0; i < 1000; i++) {
+          partition.add("key" + i, "Value " + i);
+        }
+        partition.save();
+        assertFalse(partition.isMemoryMapped());
+        assertEquals("Value 999", partition.read("key999"));
+        String stored = new String(Files.readAllBytes(partition.getStorageFile().toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(stored.contains("Value 1"));
+      } finally {
+        partition.close();
+      }
+    }
+  }
 }